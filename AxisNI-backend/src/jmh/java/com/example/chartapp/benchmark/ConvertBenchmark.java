@@ -0,0 +1,67 @@
+package com.example.chartapp.benchmark;
+
+import com.example.chartapp.service.DataTable;
+import com.example.chartapp.service.Downsampler;
+import com.example.chartapp.service.FileParsingService;
+import com.example.chartapp.service.ParseMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Highcharts conversion, both from a parsed table and from the JSON rows /api/chart/convert receives.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ConvertBenchmark {
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    @Param({"5", "20"})
+    public int columns;
+
+    private final FileParsingService service = new FileParsingService(new ParseMetrics(new SimpleMeterRegistry()));
+    private DataTable table;
+    private List<Map<String, Object>> rawRows;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        table = service.parseCsv(new ByteArrayResource(Fixtures.csv(rows, columns)));
+
+        // Same shape Jackson produces for the request body
+        rawRows = new ArrayList<>(rows);
+        for (int row = 0; row < table.getRowCount(); row++) {
+            Map<String, Object> values = new LinkedHashMap<>();
+            for (int column = 0; column < table.getKeys().size(); column++) {
+                values.put(table.getKeys().get(column), table.getValue(row, column));
+            }
+            rawRows.add(values);
+        }
+    }
+
+    @Benchmark
+    public Map<String, Object> convertTable() {
+        return service.convertToHighchartsConfig(table);
+    }
+
+    @Benchmark
+    public Map<String, Object> convertRawRows() {
+        return service.convertToHighchartsConfig(DataTable.fromRows(rawRows));
+    }
+
+    @Benchmark
+    public Map<String, Object> convertDownsampled() {
+        return service.convertToHighchartsConfig(table, 1000, Downsampler.Algorithm.LTTB);
+    }
+}
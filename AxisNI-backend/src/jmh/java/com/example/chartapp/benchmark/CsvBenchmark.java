@@ -0,0 +1,71 @@
+package com.example.chartapp.benchmark;
+
+import com.example.chartapp.service.ChunkedCsvReader;
+import com.example.chartapp.service.DataTable;
+import com.example.chartapp.service.FileParsingService;
+import com.example.chartapp.service.ParseMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CSV parsing from a file on disk: the chunked reader with a given number of threads
+ * against OpenCSV reading the same file record by record.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CsvBenchmark {
+
+    @Param({"500000"})
+    public int rows;
+
+    @Param({"10"})
+    public int columns;
+
+    @Param({"1", "4", "16"})
+    public int threads;
+
+    private final ParseMetrics metrics = new ParseMetrics(new SimpleMeterRegistry());
+    private final FileParsingService service = new FileParsingService(metrics);
+    private ForkJoinPool pool;
+    private ChunkedCsvReader reader;
+    private File file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Path path = Files.createTempFile("csv-benchmark-", ".csv");
+        Files.write(path, Fixtures.csv(rows, columns));
+        file = path.toFile();
+        pool = new ForkJoinPool(threads);
+        reader = new ChunkedCsvReader(metrics, pool, 1 << 20);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        pool.shutdownNow();
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Benchmark
+    public DataTable chunked() throws Exception {
+        return reader.read(file, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public DataTable openCsv() throws Exception {
+        DataTable.Builder builder = new DataTable.Builder();
+        service.readCsv(new FileSystemResource(file), builder);
+        return builder.build();
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.chartapp.benchmark;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic upload files for the benchmarks.
+ *
+ * Every fixture has a text label column followed by numeric columns, with a few
+ * blanks and non-numeric cells mixed in like real spreadsheets. A fixed seed keeps
+ * runs comparable.
+ */
+final class Fixtures {
+
+    private static final long SEED = 42;
+    private static final String[] CATEGORIES = {"North", "South", "East", "West", "Central"};
+
+    private Fixtures() {
+    }
+
+    static byte[] csv(int rows, int columns) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        StringBuilder out = new StringBuilder(rows * columns * 8);
+        appendHeaders(out, columns);
+        for (int row = 0; row < rows; row++) {
+            out.append(label(row));
+            for (int column = 1; column < columns; column++) {
+                out.append(',').append(csvValue(random));
+            }
+            out.append('\n');
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static byte[] xlsx(int rows, int columns, int sheets) throws IOException {
+        SplittableRandom random = new SplittableRandom(SEED);
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(1000);
+             ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            CellStyle percent = workbook.createCellStyle();
+            percent.setDataFormat(workbook.createDataFormat().getFormat("0.00%"));
+
+            for (int s = 0; s < sheets; s++) {
+                Sheet sheet = workbook.createSheet("Sheet" + (s + 1));
+                Row header = sheet.createRow(0);
+                header.createCell(0).setCellValue("Label");
+                for (int column = 1; column < columns; column++) {
+                    header.createCell(column).setCellValue("Series " + column);
+                }
+                for (int r = 0; r < rows; r++) {
+                    Row row = sheet.createRow(r + 1);
+                    row.createCell(0).setCellValue(label(r));
+                    for (int column = 1; column < columns; column++) {
+                        int roll = random.nextInt(100);
+                        if (roll < 2) continue;
+                        Cell cell = row.createCell(column);
+                        if (roll < 4) {
+                            cell.setCellValue("n/a");
+                        } else if (column == 1) {
+                            cell.setCellValue(random.nextDouble());
+                            cell.setCellStyle(percent);
+                        } else {
+                            cell.setCellValue(Math.round(random.nextDouble() * 100_000) / 100.0);
+                        }
+                    }
+                }
+            }
+            workbook.write(out);
+            workbook.dispose();
+            return out.toByteArray();
+        }
+    }
+
+    /**
+     * A1-style range covering the header and every data row of an xlsx fixture.
+     */
+    static String range(int rows, int columns) {
+        return new CellRangeAddress(0, rows, 0, columns - 1).formatAsString();
+    }
+
+    /**
+     * Schools CSV with the headers SchoolIndex expects.
+     */
+    static String schoolsCsv(int rows) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        String[] types = {"Academy", "Free School", "Community School", "Voluntary Aided", "Foundation School"};
+        StringBuilder out = new StringBuilder(rows * 200);
+        out.append("Rank,School Name,Type,Pupils KS4,Pupils Measured,Progress 8 Score,Progress 8 Description,")
+                .append("Entering EBacc,Staying in Education/Employment,Grade 5+ English & Maths (%),Attainment 8,")
+                .append("EBacc Avg Point Score,Address,City,Latitude,Longitude\n");
+        for (int row = 0; row < rows; row++) {
+            int pupils = 20 + random.nextInt(400);
+            out.append(row % 100 + 1).append(',')
+                    .append("School ").append(row).append(',')
+                    .append(types[random.nextInt(types.length)]).append(',')
+                    .append(pupils).append(',')
+                    .append(pupils - random.nextInt(20)).append(',')
+                    .append(String.format("%.2f", random.nextDouble() * 2 - 1)).append(',')
+                    .append("Average,")
+                    .append(random.nextInt(100)).append(".00%,")
+                    .append("95% (100 of 105),")
+                    .append(random.nextInt(100)).append(".00%,")
+                    .append(String.format("%.1f", 30 + random.nextDouble() * 50)).append(',')
+                    .append(String.format("%.2f", 3 + random.nextDouble() * 5)).append(',')
+                    .append("\"1 High Street, Town, AB1 2CD\",")
+                    .append("City ").append(random.nextInt(50)).append(',')
+                    .append(String.format("%.6f", 50 + random.nextDouble() * 5)).append(',')
+                    .append(String.format("%.6f", -3 + random.nextDouble() * 4)).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void appendHeaders(StringBuilder out, int columns) {
+        out.append("Label");
+        for (int column = 1; column < columns; column++) {
+            out.append(",Series ").append(column);
+        }
+        out.append('\n');
+    }
+
+    private static String label(int row) {
+        return CATEGORIES[row % CATEGORIES.length] + " " + row;
+    }
+
+    private static String csvValue(SplittableRandom random) {
+        int roll = random.nextInt(100);
+        if (roll < 2) return "";
+        if (roll < 4) return "n/a";
+        return String.valueOf(Math.round(random.nextDouble() * 100_000) / 100.0);
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.chartapp.benchmark;
+
+import com.example.chartapp.service.DataTable;
+import com.example.chartapp.service.FileParsingService;
+import com.example.chartapp.service.ParseMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Upload parsing: CSV, XLSX through the workbook model and the streaming reader, and sheet listing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ParsingBenchmark {
+
+    @Param({"1000", "50000"})
+    public int rows;
+
+    @Param({"5", "20"})
+    public int columns;
+
+    private final FileParsingService service = new FileParsingService(new ParseMetrics(new SimpleMeterRegistry()));
+    private byte[] csv;
+    private byte[] xlsx;
+    private String range;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        csv = Fixtures.csv(rows, columns);
+        xlsx = Fixtures.xlsx(rows, columns, 3);
+        range = Fixtures.range(rows, columns);
+    }
+
+    @Benchmark
+    public DataTable parseCsv() throws Exception {
+        return service.parseCsv(new ByteArrayResource(csv));
+    }
+
+    @Benchmark
+    public DataTable parseExcelWithHeaders() throws Exception {
+        return service.parseExcelWithHeaders(new ByteArrayResource(xlsx), 0, range);
+    }
+
+    @Benchmark
+    public DataTable parseExcelStreaming() throws Exception {
+        return service.parseExcelStreaming(new ByteArrayResource(xlsx), 0, range);
+    }
+
+    @Benchmark
+    public List<String> getSheetNames() throws Exception {
+        return service.getSheetNames(new ByteArrayResource(xlsx));
+    }
+}
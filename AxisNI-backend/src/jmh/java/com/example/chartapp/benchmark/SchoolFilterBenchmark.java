@@ -0,0 +1,70 @@
+package com.example.chartapp.benchmark;
+
+import com.example.chartapp.controller.SchoolController;
+import com.example.chartapp.service.SchoolIndex;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The /api/schools filter path, from request parameters to the result list,
+ * or to the finished body for the pre-serialized formats.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SchoolFilterBenchmark {
+
+    @Param({"5000", "50000"})
+    public int schools;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private SchoolController controller;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SchoolIndex index = new SchoolIndex();
+        index.load(new StringReader(Fixtures.schoolsCsv(schools)));
+        controller = new SchoolController(index);
+    }
+
+    @Benchmark
+    public Object allSchools() {
+        return controller.getSchools("All", "All", "", "2000", "100", "1", "100", null, null, null, null, "map");
+    }
+
+    @Benchmark
+    public Object typeAndCity() {
+        return controller.getSchools("Academy", "City 7", "", "2000", "100", "1", "100", null, null, null, null, "map");
+    }
+
+    @Benchmark
+    public Object rangesAndName() {
+        return controller.getSchools("All", "All", "school 1", "250", "60", "10", "40", null, null, null, null, "map");
+    }
+
+    @Benchmark
+    public byte[] allSchoolsSerialized() throws Exception {
+        return objectMapper.writeValueAsBytes(controller.getSchools("All", "All", "", "2000", "100", "1", "100", null, null, null, null, "map").getBody());
+    }
+
+    @Benchmark
+    public Object allSchoolsTyped() {
+        return controller.getSchools("All", "All", "", "2000", "100", "1", "100", null, null, null, null, "typed");
+    }
+
+    @Benchmark
+    public Object allSchoolsColumnar() {
+        return controller.getSchools("All", "All", "", "2000", "100", "1", "100", null, null, null, null, "columnar");
+    }
+
+    @Benchmark
+    public Object boundingBox() {
+        return controller.getSchools("All", "All", "", "2000", "100", "1", "100", 51.0, 51.5, -1.0, 0.0, "map");
+    }
+}
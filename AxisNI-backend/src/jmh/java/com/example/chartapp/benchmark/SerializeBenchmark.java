@@ -0,0 +1,67 @@
+package com.example.chartapp.benchmark;
+
+import com.example.chartapp.service.ArrowRowWriter;
+import com.example.chartapp.service.DataTable;
+import com.example.chartapp.service.FileParsingService;
+import com.example.chartapp.service.ParseMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response serialization of a parsed table and its chart config, as JSON and as an Arrow stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "--add-opens=java.base/java.nio=ALL-UNNAMED"})
+public class SerializeBenchmark {
+
+    @Param({"1000", "100000"})
+    public int rows;
+
+    @Param({"5", "20"})
+    public int columns;
+
+    private final FileParsingService service = new FileParsingService(new ParseMetrics(new SimpleMeterRegistry()));
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private DataTable table;
+    private Map<String, Object> chart;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        table = service.parseCsv(new ByteArrayResource(Fixtures.csv(rows, columns)));
+        chart = service.convertToHighchartsConfig(table);
+    }
+
+    @Benchmark
+    public int tableJson() throws Exception {
+        return objectMapper.writeValueAsBytes(table).length;
+    }
+
+    @Benchmark
+    public int tableArrow() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ArrowRowWriter.writeTable(table, out);
+        return out.size();
+    }
+
+    @Benchmark
+    public int chartJson() throws Exception {
+        return objectMapper.writeValueAsBytes(chart).length;
+    }
+
+    @Benchmark
+    public int chartArrow() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ArrowRowWriter.writeChart(chart, out);
+        return out.size();
+    }
+}
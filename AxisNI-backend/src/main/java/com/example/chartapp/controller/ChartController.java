@@ -1,17 +1,54 @@
 package com.example.chartapp.controller;
 
 import com.example.chartapp.model.Chart;
+import com.example.chartapp.model.CompressedJson;
 import com.example.chartapp.repository.ChartRepository;
+import com.example.chartapp.repository.ChartSummary;
+import com.example.chartapp.service.AggregationSpec;
+import com.example.chartapp.service.ChartBatchService;
+import com.example.chartapp.service.ChartBatchService.ItemResult;
+import com.example.chartapp.service.ChartSearchIndex;
+import com.example.chartapp.service.Aggregator;
+import com.example.chartapp.service.DataTable;
+import com.example.chartapp.service.Downsampler;
 import com.example.chartapp.service.FileParsingService;
+import com.example.chartapp.service.FileParsingService.FormulaMode;
+import com.example.chartapp.service.ParseCache;
+import com.example.chartapp.service.ParseExecutor;
+import com.example.chartapp.service.RangeSpec;
+import com.example.chartapp.service.StreamedRows;
+import com.example.chartapp.service.UploadSpool;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.RuntimeJsonMappingException;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api")
@@ -20,13 +57,25 @@ import java.util.Map;
 @AllArgsConstructor
 public class ChartController {
 
+    private static final int MAX_CHART_PAGE = 500;
+    private static final int BATCH_CHUNK_SIZE = 500;
+
     private final FileParsingService fileParsingService;
     private final ChartRepository chartRepository;
+    private final ParseCache parseCache;
+    private final Aggregator aggregator;
+    private final ParseExecutor parseExecutor;
+    private final ChartBatchService chartBatchService;
+    private final ChartSearchIndex chartSearchIndex;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/upload/excel")
     public ResponseEntity<?> uploadExcel(@RequestParam("file") MultipartFile file,
                                          @RequestParam("sheet") int sheet,
-                                         @RequestParam("range") String range) {
+                                         @RequestParam("range") String range,
+                                         @RequestParam(value = "streaming", defaultValue = "false") boolean streaming,
+                                         @RequestParam(value = "streamResponse", defaultValue = "false") boolean streamResponse,
+                                         @RequestParam(value = "formulas", required = false) String formulas) {
         if (file == null || file.isEmpty()) {
             return ResponseEntity.badRequest().body("File must not be empty");
         }
@@ -36,23 +85,122 @@ public class ChartController {
         if (range == null || range.trim().isEmpty()) {
             return ResponseEntity.badRequest().body("Range must not be empty");
         }
+        FormulaMode formulaMode;
+        try {
+            formulaMode = fileParsingService.formulaMode(formulas);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+
+        if (streamResponse) {
+            if (parseExecutor.isSaturated()) {
+                return tooManyRequests();
+            }
+            // Once rows are being written the status is fixed, so check what can be checked first
+            UploadSpool spool;
+            try {
+                spool = fileParsingService.openExcel(file, sheet, range);
+            } catch (Exception e) {
+                return ResponseEntity.badRequest().body("Failed to parse Excel: " + e.getMessage());
+            }
+            closeWithRequest(spool);
+            Resource source = new FileSystemResource(spool.getFile());
+            return ResponseEntity.ok(new StreamedRows(handler -> parseExecutor.call(() -> {
+                if (streaming) {
+                    fileParsingService.readExcelStreaming(source, sheet, range, handler);
+                } else {
+                    fileParsingService.readExcel(source, sheet, range, formulaMode, handler);
+                }
+                return null;
+            })));
+        }
 
         try {
-            List<Map<String, Object>> data = fileParsingService.parseExcelWithHeaders(file, sheet, range);
+            String variant = ParseCache.excelVariant(sheet, range, streaming, formulaMode);
+            DataTable data = parseCache.getTable(file, variant, () -> parseExecutor.call(() -> streaming
+                    ? fileParsingService.parseExcelStreaming(file, sheet, range)
+                    : fileParsingService.parseExcelWithHeaders(file, sheet, range, formulaMode)));
             return ResponseEntity.ok(data);
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests();
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Failed to parse Excel: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads several ranges, possibly from different sheets, from one upload of the workbook.
+     * Each spec is "sheet!range", e.g. spec=0!A1:C20&spec=2!B3:F100; the result maps each
+     * spec to the table /upload/excel would return for it.
+     */
+    @PostMapping("/upload/excel/ranges")
+    public ResponseEntity<?> uploadExcelRanges(@RequestParam("file") MultipartFile file,
+                                               @RequestParam("spec") List<String> specs,
+                                               @RequestParam(value = "formulas", required = false) String formulas) {
+        if (file == null || file.isEmpty()) {
+            return ResponseEntity.badRequest().body("File must not be empty");
+        }
+        if (specs.isEmpty() || specs.size() > FileParsingService.MAX_RANGES) {
+            return ResponseEntity.badRequest().body("Between 1 and " + FileParsingService.MAX_RANGES + " ranges can be read at once");
+        }
+
+        List<RangeSpec> ranges = new ArrayList<>(specs.size());
+        try {
+            for (String spec : specs) {
+                ranges.add(RangeSpec.parse(spec));
+            }
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Invalid range spec: " + e.getMessage());
+        }
+        FormulaMode formulaMode;
+        try {
+            formulaMode = fileParsingService.formulaMode(formulas);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+
+        try {
+            String key = ParseCache.digest(file) + "|ranges|" + formulaMode.name().toLowerCase() + "|" + ranges.stream().map(RangeSpec::key).toList();
+            Map<String, DataTable> tables = parseCache.get(key,
+                    () -> parseExecutor.call(() -> fileParsingService.parseExcelRanges(file, ranges, formulaMode)),
+                    result -> result.values().stream().mapToLong(DataTable::estimatedBytes).sum());
+            return ResponseEntity.ok(tables);
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests();
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Failed to parse Excel: " + e.getMessage());
         }
     }
 
     @PostMapping("/upload/csv")
-    public ResponseEntity<?> uploadCsv(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<?> uploadCsv(@RequestParam("file") MultipartFile file,
+                                       @RequestParam(value = "streamResponse", defaultValue = "false") boolean streamResponse,
+                                       @RequestParam(value = "charset", required = false) String charsetName) {
         if (file == null || file.isEmpty()) {
             return ResponseEntity.badRequest().body("CSV file must not be empty");
         }
+        Charset charset;
+        try {
+            charset = fileParsingService.csvCharset(charsetName);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Unsupported charset: " + charsetName);
+        }
+
+        if (streamResponse) {
+            if (parseExecutor.isSaturated()) {
+                return tooManyRequests();
+            }
+            return ResponseEntity.ok(new StreamedRows(handler -> parseExecutor.call(() -> {
+                fileParsingService.readCsv(file, charset, handler);
+                return null;
+            })));
+        }
         try {
-            List<Map<String, Object>> data = fileParsingService.parseCsv(file);
+            DataTable data = parseCache.getTable(file, "csv|" + charset.name(),
+                    () -> parseExecutor.call(() -> fileParsingService.parseCsv(file, charset)));
             return ResponseEntity.ok(data);
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests();
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Failed to parse CSV: " + e.getMessage());
         }
@@ -64,13 +212,21 @@ public class ChartController {
             return ResponseEntity.badRequest().body("File must not be empty");
         }
         try {
-            List<String> sheets = fileParsingService.getSheetNames(file);
+            List<String> sheets = parseCache.get(ParseCache.digest(file) + "|sheets",
+                    () -> parseExecutor.call(() -> fileParsingService.getSheetNames(file)), names -> 64L * names.size());
             return ResponseEntity.ok(Map.of("sheets", sheets));
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests();
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Failed to read sheet names: " + e.getMessage());
         }
     }
 
+    @GetMapping("/upload/cache/stats")
+    public ResponseEntity<Map<String, Object>> getParseCacheStats() {
+        return ResponseEntity.ok(parseCache.getStats());
+    }
+
     @PostMapping("/chart/save")
     public ResponseEntity<?> saveChart(@RequestBody ChartDto chartDto) {
         if (chartDto.getName() == null || chartDto.getName().trim().isEmpty()) {
@@ -86,9 +242,81 @@ public class ChartController {
                 .build();
 
         chartRepository.save(chart);
+        chartSearchIndex.add(chart);
         return ResponseEntity.ok(chart);
     }
 
+    /**
+     * Saves many charts from a JSON array or NDJSON body, reading and saving in chunks.
+     * Every entry gets a result, so invalid entries do not stop the rest of the import.
+     */
+    @PostMapping(value = "/chart/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<?> saveCharts(HttpServletRequest request) {
+        List<ItemResult> results = new ArrayList<>();
+        List<Chart> chunk = new ArrayList<>(BATCH_CHUNK_SIZE);
+        List<Integer> chunkIndexes = new ArrayList<>(BATCH_CHUNK_SIZE);
+        int index = 0;
+
+        // A root-level array is unwrapped, NDJSON is read as a sequence of root values
+        try (MappingIterator<ChartDto> items = objectMapper.readerFor(ChartDto.class).readValues(request.getInputStream())) {
+            while (items.hasNext()) {
+                ChartDto chartDto;
+                try {
+                    chartDto = items.next();
+                } catch (RuntimeJsonMappingException e) {
+                    // Well-formed JSON of the wrong shape; the iterator skips past it
+                    results.add(ItemResult.invalid(index++, "Invalid entry: " + (e.getCause() instanceof JsonProcessingException cause ? cause.getOriginalMessage() : e.getMessage())));
+                    continue;
+                } catch (RuntimeException e) {
+                    // Broken JSON, nothing after this point can be trusted
+                    results.add(ItemResult.invalid(index, "Malformed JSON: " + e.getMessage()));
+                    break;
+                }
+
+                String error = validate(chartDto);
+                if (error != null) {
+                    results.add(ItemResult.invalid(index, error));
+                } else {
+                    chunk.add(Chart.builder().name(chartDto.getName()).configJson(chartDto.getConfigJson()).build());
+                    chunkIndexes.add(index);
+                }
+                index++;
+
+                if (chunk.size() == BATCH_CHUNK_SIZE) {
+                    results.addAll(chartBatchService.saveChunk(chunk, chunkIndexes));
+                    chunk = new ArrayList<>(BATCH_CHUNK_SIZE);
+                    chunkIndexes = new ArrayList<>(BATCH_CHUNK_SIZE);
+                }
+            }
+        } catch (Exception e) {
+            results.add(ItemResult.invalid(index, "Malformed JSON: " + e.getMessage()));
+        }
+        if (!chunk.isEmpty()) {
+            results.addAll(chartBatchService.saveChunk(chunk, chunkIndexes));
+        }
+        results.sort(Comparator.comparingInt(ItemResult::index));
+
+        long saved = results.stream().filter(result -> result.id() != null).count();
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("saved", saved);
+        body.put("rejected", results.size() - saved);
+        body.put("results", results);
+        return ResponseEntity.ok(body);
+    }
+
+    private static String validate(ChartDto chartDto) {
+        if (chartDto == null) {
+            return "Entry must not be null";
+        }
+        if (chartDto.getName() == null || chartDto.getName().trim().isEmpty()) {
+            return "Chart name must not be empty";
+        }
+        if (chartDto.getConfigJson() == null || chartDto.getConfigJson().trim().isEmpty()) {
+            return "Config JSON must not be empty";
+        }
+        return null;
+    }
+
     @GetMapping("/chart/all")
     public ResponseEntity<List<Chart>> getAllCharts() {
         List<Chart> charts = chartRepository.findAll();
@@ -96,22 +324,167 @@ public class ChartController {
     }
 
     /**
-     * Convert raw data to Highcharts config JSON.
+     * Lists chart summaries by id. Pass the returned nextAfter as after to get the next page;
+     * it is null on the last page.
+     */
+    @GetMapping("/chart")
+    public ResponseEntity<?> listCharts(@RequestParam(value = "after", defaultValue = "0") long after,
+                                        @RequestParam(value = "limit", defaultValue = "50") int limit) {
+        if (limit <= 0 || limit > MAX_CHART_PAGE) {
+            return ResponseEntity.badRequest().body("limit must be between 1 and " + MAX_CHART_PAGE);
+        }
+
+        List<ChartSummary> items = chartRepository.findSummariesAfter(after, PageRequest.of(0, limit));
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("items", items);
+        body.put("nextAfter", items.size() == limit ? items.get(items.size() - 1).getId() : null);
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Chart summaries whose name contains q, ignoring case, best matches first.
+     */
+    @GetMapping("/chart/search")
+    public ResponseEntity<?> searchCharts(@RequestParam("q") String q,
+                                          @RequestParam(value = "page", defaultValue = "0") int page,
+                                          @RequestParam(value = "size", defaultValue = "20") int size) {
+        if (q == null || q.trim().isEmpty()) {
+            return ResponseEntity.badRequest().body("Query must not be empty");
+        }
+        if (page < 0 || size <= 0 || size > MAX_CHART_PAGE) {
+            return ResponseEntity.badRequest().body("Page must be non-negative and size between 1 and " + MAX_CHART_PAGE);
+        }
+
+        ChartSearchIndex.Result result = chartSearchIndex.search(q, page, size);
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("q", q);
+        body.put("page", page);
+        body.put("size", size);
+        body.put("total", result.total());
+        body.put("items", result.items());
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * One chart with its config. The ETag covers the name and the config hash.
+     */
+    @GetMapping("/chart/{id}")
+    public ResponseEntity<?> getChart(@PathVariable long id, WebRequest request) {
+        Optional<Chart> found = chartRepository.findById(id);
+        if (found.isEmpty()) {
+            return chartNotFound();
+        }
+        Chart chart = found.get();
+        String etag = "W/\"" + chart.getConfigHash() + "-" + Integer.toHexString(String.valueOf(chart.getName()).hashCode()) + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).body(chart);
+    }
+
+    /**
+     * The chart's config JSON alone. Clients that accept gzip get the stored bytes as they are.
+     */
+    @GetMapping("/chart/{id}/config")
+    public ResponseEntity<?> getChartConfig(@PathVariable long id,
+                                            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                            WebRequest request) {
+        // Check the hash first so a 304 never reads the config itself
+        Optional<String> hash = chartRepository.findConfigHash(id);
+        if (hash.isEmpty()) {
+            return chartRepository.existsById(id) ? ResponseEntity.noContent().build() : chartNotFound();
+        }
+        String etag = "\"" + hash.get() + "\"";
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+
+        byte[] compressed = chartRepository.findConfigGzip(id).orElse(null);
+        if (compressed == null) {
+            return chartNotFound();
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(etag)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (acceptsGzip(acceptEncoding)) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(compressed);
+        }
+        return response.body(CompressedJson.decompress(compressed).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Convert raw data to Highcharts config JSON. With maxPoints above 0, at most that
+     * many categories are kept, shared by every series; with groupBy they are groups.
      */
     @PostMapping("/chart/convert")
-    public ResponseEntity<?> convertToHighcharts(@RequestBody List<Map<String, Object>> rawData) {
+    public ResponseEntity<?> convertToHighcharts(@RequestBody List<Map<String, Object>> rawData,
+                                                 @RequestParam(value = "maxPoints", defaultValue = "0") int maxPoints,
+                                                 @RequestParam(value = "algorithm", defaultValue = "lttb") String algorithm,
+                                                 @RequestParam(value = "groupBy", required = false) String groupBy,
+                                                 @RequestParam(value = "bucket", required = false) String bucket,
+                                                 @RequestParam(value = "pivot", required = false) String pivot,
+                                                 @RequestParam(value = "measure", required = false) List<String> measures) {
         if (rawData == null || rawData.isEmpty()) {
             return ResponseEntity.badRequest().body("Raw data must not be empty");
         }
+        if (maxPoints < 0) {
+            return ResponseEntity.badRequest().body("maxPoints must be non-negative");
+        }
 
         try {
-            Map<String, Object> config = fileParsingService.convertToHighchartsConfig(rawData);
+            DataTable table = DataTable.fromRows(rawData);
+            if (groupBy != null && !groupBy.isBlank()) {
+                return ResponseEntity.ok(aggregator.aggregate(
+                        table, AggregationSpec.of(groupBy, bucket, pivot, measures), maxPoints, Downsampler.Algorithm.parse(algorithm)));
+            }
+            Map<String, Object> config = fileParsingService.convertToHighchartsConfig(
+                    table, maxPoints, Downsampler.Algorithm.parse(algorithm));
             return ResponseEntity.ok(config);
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Failed to convert data: " + e.getMessage());
         }
     }
 
+    /**
+     * Deletes the spool when the request completes. Streamed rows are read after the
+     * handler returns, and may not be read at all if no converter accepts them.
+     */
+    private static void closeWithRequest(UploadSpool spool) {
+        RequestContextHolder.currentRequestAttributes().registerDestructionCallback("uploadSpool", () -> {
+            try {
+                spool.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, RequestAttributes.SCOPE_REQUEST);
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) return false;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip") || parts[0].trim().equals("*")) {
+                // gzip;q=0 means the client refuses it
+                return parts.length < 2 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private ResponseEntity<String> chartNotFound() {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Chart not found");
+    }
+
+    private ResponseEntity<String> tooManyRequests() {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(parseExecutor.getRetryAfterSeconds()))
+                .body("Too many files are being parsed, please retry later");
+    }
+
     @Data
     @NoArgsConstructor
     @AllArgsConstructor
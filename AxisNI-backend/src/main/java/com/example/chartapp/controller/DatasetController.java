@@ -0,0 +1,195 @@
+package com.example.chartapp.controller;
+
+import com.example.chartapp.service.AggregationSpec;
+import com.example.chartapp.service.Aggregator;
+import com.example.chartapp.service.DataTable;
+import com.example.chartapp.service.DatasetStore;
+import com.example.chartapp.service.DatasetStore.Dataset;
+import com.example.chartapp.service.Downsampler;
+import com.example.chartapp.service.FileParsingService;
+import com.example.chartapp.service.FileParsingService.FormulaMode;
+import com.example.chartapp.service.ParseCache;
+import com.example.chartapp.service.ParseExecutor;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Upload a file once, then query its sheets and ranges by dataset id.
+ */
+@RestController
+@RequestMapping("/api/datasets")
+@CrossOrigin(origins = {"http://localhost:3000", "https://chartsgp-3.onrender.com"})
+@AllArgsConstructor
+public class DatasetController {
+
+    private final DatasetStore datasetStore;
+    private final FileParsingService fileParsingService;
+    private final ParseCache parseCache;
+    private final Aggregator aggregator;
+    private final ParseExecutor parseExecutor;
+
+    @PostMapping
+    public ResponseEntity<?> createDataset(@RequestParam("file") MultipartFile file) {
+        if (file == null || file.isEmpty()) {
+            return ResponseEntity.badRequest().body("File must not be empty");
+        }
+        try {
+            Dataset dataset = datasetStore.create(file);
+            try {
+                return ResponseEntity.status(HttpStatus.CREATED).body(describe(dataset, sheetNames(dataset)));
+            } catch (RejectedExecutionException e) {
+                // The file is fine, only the parse pool is busy; the sheets can be listed later
+                return ResponseEntity.status(HttpStatus.CREATED).body(describe(dataset, null));
+            } catch (Exception e) {
+                // Not a readable workbook, so there is nothing worth keeping
+                datasetStore.delete(dataset.getId());
+                return ResponseEntity.badRequest().body("Failed to read sheet names: " + e.getMessage());
+            }
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Failed to store file: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getDataset(@PathVariable String id) {
+        Optional<Dataset> dataset = datasetStore.get(id);
+        if (dataset.isEmpty()) {
+            return notFound();
+        }
+        try {
+            return ResponseEntity.ok(describe(dataset.get(), sheetNames(dataset.get())));
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests();
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Failed to read sheet names: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/{id}/sheets")
+    public ResponseEntity<?> getSheets(@PathVariable String id) {
+        Optional<Dataset> dataset = datasetStore.get(id);
+        if (dataset.isEmpty()) {
+            return notFound();
+        }
+        try {
+            return ResponseEntity.ok(Map.of("sheets", sheetNames(dataset.get())));
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests();
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Failed to read sheet names: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/{id}/sheets/{sheet}")
+    public ResponseEntity<?> getSheetRange(@PathVariable String id,
+                                           @PathVariable int sheet,
+                                           @RequestParam(value = "range", required = false) String range,
+                                           @RequestParam(value = "streaming", defaultValue = "false") boolean streaming,
+                                           @RequestParam(value = "formulas", required = false) String formulas) {
+        Optional<Dataset> found = datasetStore.get(id);
+        if (found.isEmpty()) {
+            return notFound();
+        }
+        Dataset dataset = found.get();
+        if (sheet < 0 || (dataset.isCsv() && sheet != 0)) {
+            return ResponseEntity.badRequest().body("Sheet index is out of range");
+        }
+        if (!dataset.isCsv() && (range == null || range.trim().isEmpty())) {
+            return ResponseEntity.badRequest().body("Range must not be empty");
+        }
+
+        try {
+            return ResponseEntity.ok(table(dataset, sheet, range, streaming, fileParsingService.formulaMode(formulas)));
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests();
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Failed to parse dataset: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Highcharts config for a range of the dataset, optionally aggregated by a group-by column.
+     */
+    @GetMapping("/{id}/sheets/{sheet}/chart")
+    public ResponseEntity<?> getSheetChart(@PathVariable String id,
+                                           @PathVariable int sheet,
+                                           @RequestParam(value = "range", required = false) String range,
+                                           @RequestParam(value = "streaming", defaultValue = "false") boolean streaming,
+                                           @RequestParam(value = "formulas", required = false) String formulas,
+                                           @RequestParam(value = "groupBy", required = false) String groupBy,
+                                           @RequestParam(value = "bucket", required = false) String bucket,
+                                           @RequestParam(value = "pivot", required = false) String pivot,
+                                           @RequestParam(value = "measure", required = false) List<String> measures,
+                                           @RequestParam(value = "maxPoints", defaultValue = "0") int maxPoints,
+                                           @RequestParam(value = "algorithm", defaultValue = "lttb") String algorithm) {
+        ResponseEntity<?> response = getSheetRange(id, sheet, range, streaming, formulas);
+        if (!(response.getBody() instanceof DataTable table)) {
+            return response;
+        }
+
+        try {
+            if (groupBy != null && !groupBy.isBlank()) {
+                return ResponseEntity.ok(aggregator.aggregate(table, AggregationSpec.of(groupBy, bucket, pivot, measures),
+                        Math.max(maxPoints, 0), Downsampler.Algorithm.parse(algorithm)));
+            }
+            return ResponseEntity.ok(fileParsingService.convertToHighchartsConfig(
+                    table, Math.max(maxPoints, 0), Downsampler.Algorithm.parse(algorithm)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Failed to convert data: " + e.getMessage());
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> deleteDataset(@PathVariable String id) {
+        return datasetStore.delete(id) ? ResponseEntity.noContent().build() : notFound();
+    }
+
+    private DataTable table(Dataset dataset, int sheet, String range, boolean streaming, FormulaMode formulas) throws Exception {
+        if (dataset.isCsv()) {
+            return parseCache.get(dataset.getDigest() + "|csv",
+                    () -> parseExecutor.call(() -> fileParsingService.parseCsv(dataset.getResource())), DataTable::estimatedBytes);
+        }
+        String variant = ParseCache.excelVariant(sheet, range, streaming, formulas);
+        return parseCache.get(dataset.getDigest() + "|" + variant, () -> parseExecutor.call(() -> streaming
+                ? fileParsingService.parseExcelStreaming(dataset.getResource(), sheet, range)
+                : fileParsingService.parseExcelWithHeaders(dataset.getResource(), sheet, range, formulas)), DataTable::estimatedBytes);
+    }
+
+    private List<String> sheetNames(Dataset dataset) throws Exception {
+        if (dataset.isCsv()) {
+            return List.of(dataset.getFileName());
+        }
+        return parseCache.get(dataset.getDigest() + "|sheets",
+                () -> parseExecutor.call(() -> fileParsingService.getSheetNames(dataset.getResource())), names -> 64L * names.size());
+    }
+
+    private Map<String, Object> describe(Dataset dataset, List<String> sheets) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("id", dataset.getId());
+        body.put("fileName", dataset.getFileName());
+        body.put("size", dataset.getSize());
+        body.put("sheets", sheets);
+        body.put("expiresAt", datasetStore.expiresAt(dataset));
+        return body;
+    }
+
+    private ResponseEntity<String> notFound() {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Dataset not found");
+    }
+
+    private ResponseEntity<String> tooManyRequests() {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(parseExecutor.getRetryAfterSeconds()))
+                .body("Too many files are being parsed, please retry later");
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.chartapp.controller;
+
+import com.example.chartapp.service.DataTable;
+import com.example.chartapp.service.FileParsingService;
+import com.example.chartapp.service.FileParsingService.FormulaMode;
+import com.example.chartapp.service.ParseExecutor;
+import com.example.chartapp.service.ParseJobService;
+import com.example.chartapp.service.ParseJobService.ParseJob;
+import com.example.chartapp.service.ParseJobService.State;
+import lombok.AllArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Parse large uploads in the background: submit, poll progress, then page through the rows.
+ */
+@RestController
+@RequestMapping("/api/jobs")
+@CrossOrigin(origins = {"http://localhost:3000", "https://chartsgp-3.onrender.com"})
+@AllArgsConstructor
+public class JobController {
+
+    private static final int MAX_PAGE_SIZE = 10_000;
+
+    private final ParseJobService parseJobService;
+    private final ParseExecutor parseExecutor;
+    private final FileParsingService fileParsingService;
+
+    @PostMapping
+    public ResponseEntity<?> submitJob(@RequestParam("file") MultipartFile file,
+                                       @RequestParam(value = "sheet", defaultValue = "0") int sheet,
+                                       @RequestParam(value = "range", required = false) String range,
+                                       @RequestParam(value = "streaming", defaultValue = "false") boolean streaming,
+                                       @RequestParam(value = "formulas", required = false) String formulas) {
+        if (file == null || file.isEmpty()) {
+            return ResponseEntity.badRequest().body("File must not be empty");
+        }
+        boolean csv = file.getOriginalFilename() != null && file.getOriginalFilename().toLowerCase().endsWith(".csv");
+        if (!csv && sheet < 0) {
+            return ResponseEntity.badRequest().body("Sheet index must be non-negative");
+        }
+        if (!csv && (range == null || range.trim().isEmpty())) {
+            return ResponseEntity.badRequest().body("Range must not be empty");
+        }
+        FormulaMode formulaMode;
+        try {
+            formulaMode = fileParsingService.formulaMode(formulas);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+
+        try {
+            ParseJob job = parseJobService.submit(file, sheet, range, streaming, formulaMode);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .header(HttpHeaders.LOCATION, "/api/jobs/" + job.getId())
+                    .body(describe(job));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(parseExecutor.getRetryAfterSeconds()))
+                    .body("Too many files are being parsed, please retry later");
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("Failed to store file: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getJob(@PathVariable String id) {
+        Optional<ParseJob> job = parseJobService.get(id);
+        return job.<ResponseEntity<?>>map(value -> ResponseEntity.ok(describe(value))).orElseGet(this::notFound);
+    }
+
+    /**
+     * One page of the parsed rows, available once the job is done.
+     */
+    @GetMapping("/{id}/result")
+    public ResponseEntity<?> getJobResult(@PathVariable String id,
+                                          @RequestParam(value = "page", defaultValue = "0") int page,
+                                          @RequestParam(value = "size", defaultValue = "1000") int size) {
+        Optional<ParseJob> found = parseJobService.get(id);
+        if (found.isEmpty()) {
+            return notFound();
+        }
+        ParseJob job = found.get();
+        if (job.getState() != State.DONE) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Job is " + job.getState().name().toLowerCase());
+        }
+        if (page < 0 || size <= 0 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body("Page must be non-negative and size between 1 and " + MAX_PAGE_SIZE);
+        }
+
+        DataTable table = job.getResult();
+        long from = (long) page * size;
+        int totalRows = table.getRowCount();
+
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("page", page);
+        body.put("size", size);
+        body.put("totalRows", totalRows);
+        body.put("totalPages", (totalRows + size - 1) / size);
+        body.put("rows", table.rows((int) Math.min(from, totalRows), (int) Math.min(from + size, totalRows)));
+        return ResponseEntity.ok(body);
+    }
+
+    /**
+     * Cancels a queued or running job, or discards a finished one.
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> deleteJob(@PathVariable String id) {
+        return parseJobService.delete(id) ? ResponseEntity.noContent().build() : notFound();
+    }
+
+    private Map<String, Object> describe(ParseJob job) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("id", job.getId());
+        body.put("fileName", job.getFileName());
+        body.put("state", job.getState());
+        body.put("rowsProcessed", job.getRowsProcessed());
+        body.put("bytesRead", job.getBytesRead());
+        body.put("totalBytes", job.getTotalBytes());
+        body.put("expectedRows", job.getExpectedRows());
+        body.put("progress", job.getProgress());
+        body.put("error", job.getError());
+        body.put("createdAt", job.getCreatedAt());
+        body.put("finishedAt", job.getFinishedAt());
+        return body;
+    }
+
+    private ResponseEntity<String> notFound() {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Job not found");
+    }
+}
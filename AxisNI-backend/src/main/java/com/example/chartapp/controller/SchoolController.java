@@ -1,25 +1,43 @@
 package com.example.chartapp.controller;
 
+import com.example.chartapp.service.SchoolIndex;
+import com.example.chartapp.service.SchoolIndex.BoundingBox;
+import lombok.AllArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.core.io.ClassPathResource;
-import com.opencsv.CSVReader;
 
-import java.io.InputStreamReader;
 import java.util.*;
 
 @RestController
 @RequestMapping("/api/schools")
+@AllArgsConstructor
 public class SchoolController {
 
+    private static final int MAX_ZOOM = 22;
+
+    private final SchoolIndex schoolIndex;
+
+    /**
+     * Schools matching the filters. format=typed returns School objects with numeric
+     * fields and format=columnar returns one header plus an array of values per school;
+     * both are served from JSON pre-serialized at startup. The default keeps the
+     * original string map per school.
+     */
     @GetMapping
-    public List<Map<String, String>> getSchools(
+    public ResponseEntity<?> getSchools(
         @RequestParam(defaultValue = "All") String type,
         @RequestParam(defaultValue = "All") String city,
         @RequestParam(defaultValue = "") String name,
         @RequestParam(defaultValue = "2000") String pupilsMaxStr,
         @RequestParam(defaultValue = "100") String grade5MaxStr,
         @RequestParam(defaultValue = "1") String rankMinStr,
-        @RequestParam(defaultValue = "100") String rankMaxStr
+        @RequestParam(defaultValue = "100") String rankMaxStr,
+        @RequestParam(required = false) Double minLat,
+        @RequestParam(required = false) Double maxLat,
+        @RequestParam(required = false) Double minLng,
+        @RequestParam(required = false) Double maxLng,
+        @RequestParam(defaultValue = "map") String format
     ) {
         // Sanitize and parse integer parameters safely
         int pupilsMax = safeParseInt(pupilsMaxStr, 2000);
@@ -27,78 +45,77 @@ public class SchoolController {
         int rankMin = safeParseInt(rankMinStr, 1);
         int rankMax = safeParseInt(rankMaxStr, 100);
 
-        List<Map<String, String>> schools = new ArrayList<>();
-
-        try {
-            var file = new ClassPathResource("data/DataSchools10.csv");
-            try (CSVReader reader = new CSVReader(new InputStreamReader(file.getInputStream()))) {
-                String[] headers = reader.readNext(); // First line
-                String[] line;
-
-                while ((line = reader.readNext()) != null) {
-                    Map<String, String> row = new HashMap<>();
-                    for (int i = 0; i < headers.length; i++) {
-                        row.put(headers[i], i < line.length ? line[i] : "");
-                    }
-
-                    if (!row.containsKey("Latitude") || !row.containsKey("Longitude")) continue;
-                    if (row.get("Latitude").isEmpty() || row.get("Longitude").isEmpty()) continue;
-
-                    int rank = safeInt(row.get("Rank"), 0);
-                    int pupils = safeInt(row.get("Pupils KS4"), 0);
-                    double grade5 = safeDouble(row.get("Grade 5+ English & Maths (%)"), 0);
-
-                    boolean matches = (type.equals("All") || row.get("Type").equalsIgnoreCase(type)) &&
-                                      (city.equals("All") || row.get("City").equalsIgnoreCase(city)) &&
-                                      (row.get("School Name").toLowerCase().contains(name.toLowerCase())) &&
-                                      (pupils <= pupilsMax) &&
-                                      (grade5 <= grade5Max) &&
-                                      (rank >= rankMin && rank <= rankMax);
-
-                    if (matches) {
-                        Map<String, String> schoolData = new HashMap<>();
-                        schoolData.put("rank", row.get("Rank"));
-                        schoolData.put("name", row.get("School Name"));
-                        schoolData.put("type", row.get("Type"));
-                        schoolData.put("city", row.get("City"));
-                        schoolData.put("address", row.get("Address"));
-                        schoolData.put("pupilsKS4", row.get("Pupils KS4"));
-                        schoolData.put("pupilsMeasured", row.get("Pupils Measured"));
-                        schoolData.put("progress8Score", row.get("Progress 8 Score"));
-                        schoolData.put("progress8Description", row.get("Progress 8 Description"));
-                        schoolData.put("enteringEBacc", row.get("Entering EBacc"));
-                        schoolData.put("stayingInEducation", row.get("Staying in Education/Employment"));
-                        schoolData.put("grade5Plus", row.get("Grade 5+ English & Maths (%)"));
-                        schoolData.put("attainment8", row.get("Attainment 8"));
-                        schoolData.put("ebaccScore", row.get("EBacc Avg Point Score"));
-                        schoolData.put("lat", row.get("Latitude"));
-                        schoolData.put("lng", row.get("Longitude"));
-
-                        schools.add(schoolData);
-                    }
-                }
+        // The box only applies when all four edges are given
+        BoundingBox box = null;
+        if (minLat != null && maxLat != null && minLng != null && maxLng != null) {
+            String error = checkBox(minLat, maxLat, minLng, maxLng);
+            if (error != null) {
+                return ResponseEntity.badRequest().body(error);
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+            box = new BoundingBox(minLat, maxLat, minLng, maxLng);
         }
 
-        return schools;
+        return switch (format) {
+            case "map" -> ResponseEntity.ok(schoolIndex.find(type, city, name, pupilsMax, grade5Max, rankMin, rankMax, box));
+            case "typed", "columnar" -> ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(schoolIndex.findJson(type, city, name, pupilsMax, grade5Max, rankMin, rankMax, box, format.equals("columnar")));
+            default -> ResponseEntity.badRequest().body("Format must be map, typed or columnar");
+        };
     }
 
-    private int safeInt(String s, int fallback) {
-        try {
-            return Integer.parseInt(s);
-        } catch (Exception e) {
-            return fallback;
+    /**
+     * Schools inside the map viewport, merged into clusters below zoom level
+     * SchoolIndex.MAX_CLUSTER_ZOOM. Takes the same filters as getSchools.
+     */
+    @GetMapping("/viewport")
+    public ResponseEntity<?> getViewport(
+        @RequestParam double minLat,
+        @RequestParam double maxLat,
+        @RequestParam double minLng,
+        @RequestParam double maxLng,
+        @RequestParam int zoom,
+        @RequestParam(defaultValue = "All") String type,
+        @RequestParam(defaultValue = "All") String city,
+        @RequestParam(defaultValue = "") String name,
+        @RequestParam(defaultValue = "2000") String pupilsMaxStr,
+        @RequestParam(defaultValue = "100") String grade5MaxStr,
+        @RequestParam(defaultValue = "1") String rankMinStr,
+        @RequestParam(defaultValue = "100") String rankMaxStr
+    ) {
+        String error = checkBox(minLat, maxLat, minLng, maxLng);
+        if (error != null) {
+            return ResponseEntity.badRequest().body(error);
         }
+        if (zoom < 0 || zoom > MAX_ZOOM) {
+            return ResponseEntity.badRequest().body("Zoom must be between 0 and " + MAX_ZOOM);
+        }
+
+        int pupilsMax = safeParseInt(pupilsMaxStr, 2000);
+        int grade5Max = safeParseInt(grade5MaxStr, 100);
+        int rankMin = safeParseInt(rankMinStr, 1);
+        int rankMax = safeParseInt(rankMaxStr, 100);
+
+        BoundingBox box = new BoundingBox(minLat, maxLat, minLng, maxLng);
+        return ResponseEntity.ok(schoolIndex.viewport(type, city, name, pupilsMax, grade5Max, rankMin, rankMax, box, zoom));
     }
 
-    private double safeDouble(String s, double fallback) {
-        try {
-            return Double.parseDouble(s);
-        } catch (Exception e) {
-            return fallback;
+    /**
+     * Why the box is unusable, or null when its edges are real coordinates in order.
+     */
+    private String checkBox(double minLat, double maxLat, double minLng, double maxLng) {
+        if (!(inRange(minLat, 90) && inRange(maxLat, 90) && inRange(minLng, 180) && inRange(maxLng, 180))) {
+            return "Latitudes must be between -90 and 90 and longitudes between -180 and 180";
+        }
+        if (!(minLat <= maxLat && minLng <= maxLng)) {
+            return "Bounding box minimums must not exceed its maximums";
         }
+        return null;
+    }
+
+    private static boolean inRange(double degrees, double limit) {
+        // False for NaN, which fails every comparison
+        return degrees >= -limit && degrees <= limit;
     }
 
     private int safeParseInt(String s, int fallback) {
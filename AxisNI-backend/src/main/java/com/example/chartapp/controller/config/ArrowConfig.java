@@ -0,0 +1,101 @@
+package com.example.chartapp.controller.config;
+
+import com.example.chartapp.service.ArrowRowWriter;
+import com.example.chartapp.service.DataTable;
+import com.example.chartapp.service.ParseMetrics;
+import com.example.chartapp.service.StreamedRows;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lets parsed tables, streamed rows and chart configs be answered as an Arrow IPC
+ * stream when the request accepts application/vnd.apache.arrow.stream.
+ *
+ * The converter is added after the default ones, so JSON stays the answer for
+ * requests that accept anything. Maps other than chart configs get 406.
+ */
+@Configuration
+public class ArrowConfig implements WebMvcConfigurer {
+
+    public static final MediaType ARROW_STREAM = MediaType.parseMediaType(ArrowRowWriter.MEDIA_TYPE);
+
+    private final ParseMetrics metrics;
+
+    public ArrowConfig(ParseMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new ArrowMessageConverter(metrics));
+    }
+
+    private static class ArrowMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+        private final ParseMetrics metrics;
+
+        ArrowMessageConverter(ParseMetrics metrics) {
+            super(ARROW_STREAM);
+            this.metrics = metrics;
+        }
+
+        @Override
+        protected boolean supports(Class<?> clazz) {
+            return DataTable.class.isAssignableFrom(clazz) || StreamedRows.class.isAssignableFrom(clazz)
+                    || Map.class.isAssignableFrom(clazz);
+        }
+
+        @Override
+        protected boolean canRead(MediaType mediaType) {
+            return false;
+        }
+
+        @Override
+        protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+            throw new HttpMessageNotReadableException("Arrow request bodies are not supported", inputMessage);
+        }
+
+        @Override
+        protected void writeInternal(Object object, HttpOutputMessage outputMessage) throws IOException {
+            if (object instanceof Map<?, ?> map && !(map.get("categories") instanceof List && map.get("series") instanceof List)) {
+                // Nothing is written yet, so the client still gets a clean status
+                throw new ResponseStatusException(HttpStatus.NOT_ACCEPTABLE, "Only chart configs can be written as Arrow");
+            }
+            long start = System.nanoTime();
+            String format = object instanceof StreamedRows ? "arrow-streamed" : object instanceof DataTable ? "arrow-table" : "arrow-chart";
+            try {
+                if (object instanceof DataTable table) {
+                    ArrowRowWriter.writeTable(table, outputMessage.getBody());
+                } else if (object instanceof StreamedRows rows) {
+                    // The parse runs here, like it does for JSON; after the first batch an error can only abort the response
+                    try (ArrowRowWriter writer = new ArrowRowWriter(outputMessage.getBody())) {
+                        rows.readInto(writer);
+                        writer.finish();
+                    }
+                } else {
+                    ArrowRowWriter.writeChart((Map<?, ?>) object, outputMessage.getBody());
+                }
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new HttpMessageNotWritableException("Failed to write Arrow stream: " + e.getMessage(), e);
+            } finally {
+                metrics.phase(ParseMetrics.ARROW_SERIALIZE, format).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
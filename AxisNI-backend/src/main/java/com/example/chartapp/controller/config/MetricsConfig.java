@@ -0,0 +1,39 @@
+package com.example.chartapp.controller.config;
+
+import com.example.chartapp.service.DataTable;
+import com.example.chartapp.service.ParseMetrics;
+import com.example.chartapp.service.StreamedRows;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Replaces Spring Boot's JSON converter with one that records the json-serialize phase.
+     * For streamed responses the parse runs during serialization, so it is tagged separately.
+     */
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper, ParseMetrics metrics) {
+        return new MappingJackson2HttpMessageConverter(objectMapper) {
+            @Override
+            protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+                long start = System.nanoTime();
+                try {
+                    super.writeInternal(object, type, outputMessage);
+                } finally {
+                    String format = object instanceof StreamedRows ? "json-streamed"
+                            : object instanceof DataTable ? "json-table" : ParseMetrics.JSON;
+                    metrics.phase(ParseMetrics.JSON_SERIALIZE, format).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+            }
+        };
+    }
+}
@@ -1,8 +1,16 @@
 package com.example.chartapp.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+
+/**
+ * A saved chart. The config is stored gzip-compressed with a SHA-256 of its text;
+ * configJson is inflated from the stored bytes the first time it is read.
+ */
 @Entity
 @Table(name = "charts")
 @Data
@@ -11,12 +19,64 @@ import lombok.*;
 @Builder
 public class Chart {
 
+    // A pooled sequence hands out ids in blocks of 50, which keeps JDBC insert batching possible
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "chart_seq")
+    @SequenceGenerator(name = "chart_seq", sequenceName = "chart_seq", allocationSize = 50)
     private Long id;
 
     private String name;
 
-    @Column(columnDefinition = "TEXT")
+    @Transient
     private String configJson;
+
+    @JsonIgnore
+    @Lob
+    @Column(name = "config_gzip")
+    private byte[] configGzip;
+
+    // Storage details, not part of the chart as clients see it
+    @JsonIgnore
+    @Column(length = 64)
+    private String configHash;
+
+    // Size of configJson in UTF-8 bytes, so listings can show it without loading the config
+    @JsonIgnore
+    private Long configSize;
+
+    @Column(updatable = false)
+    private Instant createdAt;
+
+    public String getConfigJson() {
+        if (configJson == null && configGzip != null) {
+            configJson = CompressedJson.decompress(configGzip);
+        }
+        return configJson;
+    }
+
+    /**
+     * Replaces the config and its stored form right away, since Hibernate does not see changes to a transient field.
+     */
+    public void setConfigJson(String configJson) {
+        this.configJson = configJson;
+        compressConfig();
+    }
+
+    @PrePersist
+    @PreUpdate
+    void updateDerivedFields() {
+        if (createdAt == null) {
+            createdAt = Instant.now();
+        }
+        // Built with the builder, so the config has not been compressed yet
+        if (configGzip == null && configJson != null) {
+            compressConfig();
+        }
+    }
+
+    private void compressConfig() {
+        configGzip = configJson != null ? CompressedJson.compress(configJson) : null;
+        configHash = configJson != null ? CompressedJson.hash(configJson) : null;
+        configSize = configJson != null ? (long) configJson.getBytes(StandardCharsets.UTF_8).length : 0L;
+    }
 }
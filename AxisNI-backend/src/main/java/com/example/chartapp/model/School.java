@@ -0,0 +1,46 @@
+package com.example.chartapp.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.List;
+
+/**
+ * One school with its figures as numbers. Percentages are plain numbers out of 100;
+ * stayingInEducation keeps its text since it also carries the pupil counts.
+ * Figures missing from the data are left out of the JSON.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonPropertyOrder({"rank", "name", "type", "city", "address", "pupilsKS4", "pupilsMeasured",
+        "progress8Score", "progress8Description", "enteringEBacc", "stayingInEducation",
+        "grade5Plus", "attainment8", "ebaccScore", "lat", "lng"})
+public record School(
+        Integer rank,
+        String name,
+        String type,
+        String city,
+        String address,
+        Integer pupilsKS4,
+        Integer pupilsMeasured,
+        Double progress8Score,
+        String progress8Description,
+        Double enteringEBacc,
+        String stayingInEducation,
+        Double grade5Plus,
+        Double attainment8,
+        Double ebaccScore,
+        Double lat,
+        Double lng) {
+
+    public static final List<String> FIELDS = List.of("rank", "name", "type", "city", "address", "pupilsKS4",
+            "pupilsMeasured", "progress8Score", "progress8Description", "enteringEBacc", "stayingInEducation",
+            "grade5Plus", "attainment8", "ebaccScore", "lat", "lng");
+
+    /**
+     * The values in FIELDS order, for the columnar layout.
+     */
+    public Object[] values() {
+        return new Object[]{rank, name, type, city, address, pupilsKS4, pupilsMeasured, progress8Score,
+                progress8Description, enteringEBacc, stayingInEducation, grade5Plus, attainment8, ebaccScore, lat, lng};
+    }
+}
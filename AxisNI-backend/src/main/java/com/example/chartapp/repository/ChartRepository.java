@@ -1,9 +1,29 @@
 package com.example.chartapp.repository;
 
 import com.example.chartapp.model.Chart;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface ChartRepository extends JpaRepository<Chart, Long> {
+
+    /**
+     * Keyset page of chart summaries with ids greater than after, in id order.
+     * Only the selected columns are read, never configJson.
+     */
+    @Query("select c.id as id, c.name as name, c.configSize as size, c.createdAt as createdAt "
+            + "from Chart c where c.id > :after order by c.id")
+    List<ChartSummary> findSummariesAfter(@Param("after") long after, Pageable pageable);
+
+    @Query("select c.configHash from Chart c where c.id = :id")
+    Optional<String> findConfigHash(@Param("id") long id);
+
+    @Query("select c.configGzip from Chart c where c.id = :id")
+    Optional<byte[]> findConfigGzip(@Param("id") long id);
 }
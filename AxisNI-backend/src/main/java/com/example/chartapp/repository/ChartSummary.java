@@ -0,0 +1,20 @@
+package com.example.chartapp.repository;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.time.Instant;
+
+/**
+ * Lightweight view of a saved chart for listings, without its config.
+ */
+@JsonPropertyOrder({"id", "name", "size", "createdAt"})
+public interface ChartSummary {
+
+    Long getId();
+
+    String getName();
+
+    Long getSize();
+
+    Instant getCreatedAt();
+}
@@ -0,0 +1,115 @@
+package com.example.chartapp.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What to aggregate: the group-by column, optional time bucket and pivot column,
+ * and one or more measures written as "function:column" (e.g. "sum:Sales",
+ * "p90:Latency", or just "count"). "count" counts rows and "count:column" the
+ * non-blank cells of that column, whatever their type.
+ */
+public class AggregationSpec {
+
+    public enum Function {
+        SUM, AVG, MIN, MAX, COUNT, PERCENTILE
+    }
+
+    public enum TimeBucket {
+        NONE, DAY, WEEK, MONTH, QUARTER, YEAR
+    }
+
+    public record Measure(Function function, String column, double percentile) {
+
+        /**
+         * Parses "sum:Sales", "avg:Price", "p95:Latency", "median:Latency" or "count".
+         */
+        public static Measure parse(String text) {
+            String trimmed = text.trim();
+            int colon = trimmed.indexOf(':');
+            String name = (colon < 0 ? trimmed : trimmed.substring(0, colon)).trim().toLowerCase();
+            String column = colon < 0 ? null : trimmed.substring(colon + 1).trim();
+
+            if (name.equals("count")) {
+                return new Measure(Function.COUNT, column, 0);
+            }
+            if (column == null || column.isEmpty()) {
+                throw new IllegalArgumentException("Measure needs a column: " + text);
+            }
+            switch (name) {
+                case "sum":
+                    return new Measure(Function.SUM, column, 0);
+                case "avg":
+                case "mean":
+                    return new Measure(Function.AVG, column, 0);
+                case "min":
+                    return new Measure(Function.MIN, column, 0);
+                case "max":
+                    return new Measure(Function.MAX, column, 0);
+                case "median":
+                    return new Measure(Function.PERCENTILE, column, 50);
+                default:
+                    if (name.matches("p\\d{1,2}(\\.\\d+)?|p100")) {
+                        return new Measure(Function.PERCENTILE, column, Double.parseDouble(name.substring(1)));
+                    }
+                    throw new IllegalArgumentException("Unknown aggregate function: " + name);
+            }
+        }
+
+        public String label() {
+            String function = this.function == Function.PERCENTILE
+                    ? "p" + (percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile))
+                    : this.function.name().toLowerCase();
+            return column == null ? function : function + "(" + column + ")";
+        }
+    }
+
+    private final String groupBy;
+    private final TimeBucket bucket;
+    private final String pivot;
+    private final List<Measure> measures;
+
+    public AggregationSpec(String groupBy, TimeBucket bucket, String pivot, List<Measure> measures) {
+        this.groupBy = groupBy;
+        this.bucket = bucket;
+        this.pivot = pivot;
+        this.measures = measures;
+    }
+
+    /**
+     * Builds a spec from request parameters. Without measures, every other column is summed.
+     */
+    public static AggregationSpec of(String groupBy, String bucket, String pivot, List<String> measures) {
+        TimeBucket timeBucket = TimeBucket.NONE;
+        if (bucket != null && !bucket.isBlank()) {
+            try {
+                timeBucket = TimeBucket.valueOf(bucket.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown time bucket: " + bucket);
+            }
+        }
+        List<Measure> parsed = new ArrayList<>();
+        if (measures != null) {
+            for (String measure : measures) {
+                if (!measure.isBlank()) parsed.add(Measure.parse(measure));
+            }
+        }
+        return new AggregationSpec(groupBy, timeBucket, pivot == null || pivot.isBlank() ? null : pivot, parsed);
+    }
+
+    public String getGroupBy() {
+        return groupBy;
+    }
+
+    public TimeBucket getBucket() {
+        return bucket;
+    }
+
+    public String getPivot() {
+        return pivot;
+    }
+
+    public List<Measure> getMeasures() {
+        return measures;
+    }
+}
@@ -0,0 +1,431 @@
+package com.example.chartapp.service;
+
+import com.example.chartapp.service.AggregationSpec.Function;
+import com.example.chartapp.service.AggregationSpec.Measure;
+import com.example.chartapp.service.AggregationSpec.TimeBucket;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.IsoFields;
+import java.util.*;
+
+/**
+ * Hash aggregation over DataTable columns, producing a Highcharts config.
+ *
+ * Rows are first mapped to dense group and pivot ids, then every measure is
+ * accumulated into flat primitive arrays indexed by (group, pivot, measure).
+ * Groups keep first-seen order, or chronological order when time-bucketed.
+ *
+ * The chart has one value per (group, pivot, measure), so that product is capped
+ * by aggregate.max-cells. Above aggregate.dense-cells the arrays only hold the
+ * (group, pivot) pairs that actually occur.
+ */
+@Service
+public class Aggregator {
+
+    private static final int NO_GROUP = -1;
+
+    private final long maxCells;
+    private final long denseCells;
+
+    public Aggregator(@Value("${aggregate.max-cells:1000000}") long maxCells,
+                      @Value("${aggregate.dense-cells:262144}") long denseCells) {
+        this.maxCells = Math.min(maxCells, Integer.MAX_VALUE);
+        this.denseCells = denseCells;
+    }
+
+    public Map<String, Object> aggregate(DataTable table, AggregationSpec spec) {
+        return aggregate(table, spec, 0, Downsampler.Algorithm.LTTB);
+    }
+
+    /**
+     * Aggregates, then keeps at most maxPoints groups when maxPoints is positive, picked
+     * once for all series as convertToHighchartsConfig does for raw rows.
+     */
+    public Map<String, Object> aggregate(DataTable table, AggregationSpec spec, int maxPoints, Downsampler.Algorithm algorithm) {
+        int groupColumn = requireColumn(table, spec.getGroupBy());
+        int pivotColumn = spec.getPivot() != null ? requireColumn(table, spec.getPivot()) : -1;
+        List<Measure> measures = spec.getMeasures().isEmpty() ? defaultMeasures(table, spec) : spec.getMeasures();
+
+        Keys groups = spec.getBucket() == TimeBucket.NONE
+                ? categoryKeys(table, groupColumn)
+                : timeKeys(table, groupColumn, spec.getBucket());
+        Keys pivots = pivotColumn >= 0 ? categoryKeys(table, pivotColumn) : Keys.single(table.getRowCount());
+
+        int groupCount = groups.labels.size();
+        int pivotCount = pivots.labels.size();
+        int measureCount = measures.size();
+        long cellCount = (long) groupCount * pivotCount * measureCount;
+        if (cellCount > maxCells) {
+            throw new IllegalArgumentException("Aggregation would produce " + cellCount + " values (" + groupCount + " groups x "
+                    + pivotCount + " pivots x " + measureCount + " measures), above the limit of " + maxCells);
+        }
+        Slots slots = cellCount <= denseCells ? Slots.dense(groups, pivots, pivotCount) : Slots.sparse(groups, pivots, pivotCount);
+        int cells = slots.count * measureCount;
+
+        // COUNT reads no values: it counts rows, or the non-blank cells of its column
+        double[][] values = new double[measureCount][];
+        int[] countColumns = new int[measureCount];
+        boolean[] percentiles = new boolean[measureCount];
+        boolean anyPercentile = false;
+        for (int m = 0; m < measureCount; m++) {
+            Measure measure = measures.get(m);
+            int column = measure.column() == null ? -1 : requireColumn(table, measure.column());
+            if (measure.function() == Function.COUNT) {
+                countColumns[m] = column;
+            } else {
+                values[m] = table.toDoubles(column, Double.NaN);
+            }
+            percentiles[m] = measure.function() == Function.PERCENTILE;
+            anyPercentile |= percentiles[m];
+        }
+
+        double[] sum = new double[cells];
+        long[] count = new long[cells];
+        double[] min = new double[cells];
+        double[] max = new double[cells];
+        Arrays.fill(min, Double.POSITIVE_INFINITY);
+        Arrays.fill(max, Double.NEGATIVE_INFINITY);
+        DoubleList[] samples = anyPercentile ? new DoubleList[cells] : null;
+
+        for (int row = 0; row < table.getRowCount(); row++) {
+            int slot = slots.ofRow[row];
+            if (slot == NO_GROUP) continue;
+
+            int base = slot * measureCount;
+            for (int m = 0; m < measureCount; m++) {
+                int cell = base + m;
+                if (values[m] == null) {
+                    if (countColumns[m] < 0 || !table.isBlank(row, countColumns[m])) count[cell]++;
+                    continue;
+                }
+                double value = values[m][row];
+                if (Double.isNaN(value)) continue;
+
+                sum[cell] += value;
+                count[cell]++;
+                if (value < min[cell]) min[cell] = value;
+                if (value > max[cell]) max[cell] = value;
+                if (percentiles[m]) {
+                    if (samples[cell] == null) samples[cell] = new DoubleList();
+                    samples[cell].add(value);
+                }
+            }
+        }
+
+        List<String> names = new ArrayList<>();
+        List<List<Double>> columns = new ArrayList<>();
+        for (int p = 0; p < pivotCount; p++) {
+            for (int m = 0; m < measureCount; m++) {
+                Measure measure = measures.get(m);
+                List<Double> data = new ArrayList<>(groupCount);
+                for (int g = 0; g < groupCount; g++) {
+                    int slot = slots.of(g, p);
+                    if (slot == NO_GROUP) {
+                        data.add(result(measure, 0, 0, 0, 0, null));
+                        continue;
+                    }
+                    int cell = slot * measureCount + m;
+                    data.add(result(measure, sum[cell], count[cell], min[cell], max[cell], samples != null ? samples[cell] : null));
+                }
+                names.add(seriesName(pivotColumn >= 0 ? pivots.labels.get(p) : null, measure, measureCount));
+                columns.add(data);
+            }
+        }
+
+        List<String> categories = groups.labels;
+        if (maxPoints > 0 && groupCount > maxPoints) {
+            int[] kept = downsample(columns, groupCount, maxPoints, algorithm);
+            categories = pick(categories, kept);
+            columns.replaceAll(data -> pick(data, kept));
+        }
+
+        List<Map<String, Object>> series = new ArrayList<>(names.size());
+        for (int s = 0; s < names.size(); s++) {
+            series.add(Map.of("name", names.get(s), "data", columns.get(s)));
+        }
+        return Map.of(
+                "categories", categories,
+                "series", series
+        );
+    }
+
+    // Empty cells are NaN to the downsampler, so they never decide which groups are kept
+    private static int[] downsample(List<List<Double>> columns, int groupCount, int maxPoints, Downsampler.Algorithm algorithm) {
+        List<double[]> values = new ArrayList<>(columns.size());
+        for (List<Double> data : columns) {
+            double[] column = new double[groupCount];
+            for (int g = 0; g < groupCount; g++) {
+                Double value = data.get(g);
+                column[g] = value != null ? value : Double.NaN;
+            }
+            values.add(column);
+        }
+        BitSet keep = new BitSet(groupCount);
+        Downsampler.select(values.isEmpty() ? List.of(new double[groupCount]) : values, maxPoints, algorithm, keep);
+        return keep.stream().toArray();
+    }
+
+    private static <T> List<T> pick(List<T> list, int[] indexes) {
+        List<T> picked = new ArrayList<>(indexes.length);
+        for (int index : indexes) {
+            picked.add(list.get(index));
+        }
+        return picked;
+    }
+
+    private Double result(Measure measure, double sum, long count, double min, double max, DoubleList samples) {
+        if (measure.function() == Function.COUNT) return (double) count;
+        // Empty cells become gaps in the chart
+        if (count == 0) return null;
+
+        switch (measure.function()) {
+            case SUM:
+                return sum;
+            case AVG:
+                return sum / count;
+            case MIN:
+                return min;
+            case MAX:
+                return max;
+            default:
+                return samples.percentile(measure.percentile());
+        }
+    }
+
+    private String seriesName(String pivotLabel, Measure measure, int measureCount) {
+        if (pivotLabel == null) {
+            return measureCount == 1 && measure.column() != null ? measure.column() : measure.label();
+        }
+        return measureCount == 1 ? pivotLabel : pivotLabel + " - " + measure.label();
+    }
+
+    private List<Measure> defaultMeasures(DataTable table, AggregationSpec spec) {
+        List<Measure> measures = new ArrayList<>();
+        for (String key : table.getKeys()) {
+            if (!key.equals(spec.getGroupBy()) && !key.equals(spec.getPivot()) && hasNumbers(table, table.columnOf(key))) {
+                measures.add(new Measure(Function.SUM, key, 0));
+            }
+        }
+        if (measures.isEmpty()) {
+            measures.add(new Measure(Function.COUNT, null, 0));
+        }
+        return measures;
+    }
+
+    private boolean hasNumbers(DataTable table, int column) {
+        for (double value : table.toDoubles(column, Double.NaN)) {
+            if (!Double.isNaN(value)) return true;
+        }
+        return false;
+    }
+
+    private int requireColumn(DataTable table, String key) {
+        int column = key == null ? -1 : table.columnOf(key);
+        if (column < 0) {
+            throw new IllegalArgumentException("Unknown column: " + key);
+        }
+        return column;
+    }
+
+    /**
+     * Dense ids by distinct cell value, in first-seen order. String cells are
+     * resolved through their dictionary code so each distinct string is hashed once.
+     */
+    private Keys categoryKeys(DataTable table, int column) {
+        int rowCount = table.getRowCount();
+        int[] ids = new int[rowCount];
+        int[] codeToId = new int[table.getDictionarySize(column)];
+        Arrays.fill(codeToId, NO_GROUP);
+        Map<String, Integer> labelToId = new HashMap<>();
+        List<String> labels = new ArrayList<>();
+
+        for (int row = 0; row < rowCount; row++) {
+            if (table.getKind(row, column) == DataTable.STRING) {
+                int code = table.getCode(row, column);
+                if (codeToId[code] == NO_GROUP) {
+                    codeToId[code] = idFor(table.getDictionaryValue(column, code), labelToId, labels);
+                }
+                ids[row] = codeToId[code];
+            } else {
+                ids[row] = idFor(String.valueOf(table.getValue(row, column)), labelToId, labels);
+            }
+        }
+        return new Keys(ids, labels);
+    }
+
+    private int idFor(String label, Map<String, Integer> labelToId, List<String> labels) {
+        Integer id = labelToId.get(label);
+        if (id == null) {
+            id = labels.size();
+            labels.add(label);
+            labelToId.put(label, id);
+        }
+        return id;
+    }
+
+    /**
+     * Dense ids by time bucket, ordered chronologically. Cells that are neither dates
+     * nor ISO date strings are left out of the aggregation.
+     */
+    private Keys timeKeys(DataTable table, int column, TimeBucket bucket) {
+        int rowCount = table.getRowCount();
+        ZoneId zone = ZoneId.systemDefault();
+
+        LocalDate[] parsedCodes = new LocalDate[table.getDictionarySize(column)];
+        for (int code = 0; code < parsedCodes.length; code++) {
+            parsedCodes[code] = parseDate(table.getDictionaryValue(column, code));
+        }
+
+        long[] bucketKeys = new long[rowCount];
+        boolean[] hasKey = new boolean[rowCount];
+        TreeMap<Long, String> labelsByKey = new TreeMap<>();
+        for (int row = 0; row < rowCount; row++) {
+            byte kind = table.getKind(row, column);
+            LocalDate date = null;
+            if (kind == DataTable.DATE) {
+                date = Instant.ofEpochMilli((long) table.getNumber(row, column)).atZone(zone).toLocalDate();
+            } else if (kind == DataTable.STRING) {
+                date = parsedCodes[table.getCode(row, column)];
+            }
+            if (date == null) continue;
+
+            LocalDate bucketDate = date;
+            long key = bucketKey(bucketDate, bucket);
+            bucketKeys[row] = key;
+            hasKey[row] = true;
+            labelsByKey.computeIfAbsent(key, k -> bucketLabel(bucketDate, bucket));
+        }
+
+        Map<Long, Integer> keyToId = new HashMap<>();
+        List<String> labels = new ArrayList<>(labelsByKey.size());
+        for (Map.Entry<Long, String> entry : labelsByKey.entrySet()) {
+            keyToId.put(entry.getKey(), labels.size());
+            labels.add(entry.getValue());
+        }
+
+        int[] ids = new int[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            ids[row] = hasKey[row] ? keyToId.get(bucketKeys[row]) : NO_GROUP;
+        }
+        return new Keys(ids, labels);
+    }
+
+    private static LocalDate parseDate(String text) {
+        String trimmed = text.trim();
+        try {
+            if (trimmed.length() == 10) return LocalDate.parse(trimmed);
+            if (trimmed.length() > 10 && trimmed.charAt(10) == 'T') return LocalDateTime.parse(trimmed).toLocalDate();
+        } catch (DateTimeParseException e) {
+            // Not a date, the row is skipped
+        }
+        return null;
+    }
+
+    private static long bucketKey(LocalDate date, TimeBucket bucket) {
+        switch (bucket) {
+            case DAY:
+                return date.toEpochDay();
+            case WEEK:
+                return date.get(IsoFields.WEEK_BASED_YEAR) * 100L + date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR);
+            case MONTH:
+                return date.getYear() * 100L + date.getMonthValue();
+            case QUARTER:
+                return date.getYear() * 10L + date.get(IsoFields.QUARTER_OF_YEAR);
+            default:
+                return date.getYear();
+        }
+    }
+
+    private static String bucketLabel(LocalDate date, TimeBucket bucket) {
+        switch (bucket) {
+            case DAY:
+                return date.toString();
+            case WEEK:
+                return String.format("%d-W%02d", date.get(IsoFields.WEEK_BASED_YEAR), date.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+            case MONTH:
+                return String.format("%d-%02d", date.getYear(), date.getMonthValue());
+            case QUARTER:
+                return date.getYear() + "-Q" + date.get(IsoFields.QUARTER_OF_YEAR);
+            default:
+                return String.valueOf(date.getYear());
+        }
+    }
+
+    private record Keys(int[] ids, List<String> labels) {
+        static Keys single(int rowCount) {
+            return new Keys(new int[rowCount], List.of(""));
+        }
+    }
+
+    /**
+     * Accumulator slot per row and per (group, pivot). Dense slots cover every pair;
+     * sparse ones are handed out in first-seen order to the pairs that occur.
+     */
+    private static class Slots {
+        final int[] ofRow;
+        final int count;
+        private final int pivotCount;
+        private final Map<Long, Integer> sparse;
+
+        private Slots(int[] ofRow, int count, int pivotCount, Map<Long, Integer> sparse) {
+            this.ofRow = ofRow;
+            this.count = count;
+            this.pivotCount = pivotCount;
+            this.sparse = sparse;
+        }
+
+        static Slots dense(Keys groups, Keys pivots, int pivotCount) {
+            int[] ofRow = new int[groups.ids.length];
+            for (int row = 0; row < ofRow.length; row++) {
+                int group = groups.ids[row], pivot = pivots.ids[row];
+                ofRow[row] = group == NO_GROUP || pivot == NO_GROUP ? NO_GROUP : group * pivotCount + pivot;
+            }
+            return new Slots(ofRow, groups.labels.size() * pivotCount, pivotCount, null);
+        }
+
+        static Slots sparse(Keys groups, Keys pivots, int pivotCount) {
+            int[] ofRow = new int[groups.ids.length];
+            Map<Long, Integer> slots = new HashMap<>();
+            for (int row = 0; row < ofRow.length; row++) {
+                int group = groups.ids[row], pivot = pivots.ids[row];
+                ofRow[row] = group == NO_GROUP || pivot == NO_GROUP
+                        ? NO_GROUP
+                        : slots.computeIfAbsent((long) group * pivotCount + pivot, k -> slots.size());
+            }
+            return new Slots(ofRow, slots.size(), pivotCount, slots);
+        }
+
+        int of(int group, int pivot) {
+            if (sparse == null) return group * pivotCount + pivot;
+            return sparse.getOrDefault((long) group * pivotCount + pivot, NO_GROUP);
+        }
+    }
+
+    /**
+     * Growable primitive list for the values behind a percentile.
+     */
+    private static class DoubleList {
+        private double[] values = new double[16];
+        private int size;
+
+        void add(double value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        double percentile(double p) {
+            double[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            double rank = p / 100 * (size - 1);
+            int lower = (int) Math.floor(rank);
+            int upper = (int) Math.ceil(rank);
+            return sorted[lower] + (sorted[upper] - sorted[lower]) * (rank - lower);
+        }
+    }
+}
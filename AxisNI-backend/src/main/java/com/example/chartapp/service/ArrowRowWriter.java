@@ -0,0 +1,390 @@
+package com.example.chartapp.service;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampMilliTZVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes handled rows to an Arrow IPC stream, one record batch every BATCH_ROWS
+ * rows, so a streamed parse leaves the server batch by batch.
+ *
+ * Columns follow the keys of the JSON rows. Their types are given up front or
+ * taken from the first batch: numbers and numeric text become float64, booleans
+ * bool, dates UTC millisecond timestamps and anything else dictionary-encoded
+ * UTF-8. Blank cells are null. A later value that does not fit its column is
+ * converted where it can be, a number into text or numeric text into a number,
+ * and is null otherwise. Text dictionaries are rebuilt for every batch, so they
+ * stay as small as the batch; the stream only resends one when it changed.
+ */
+public class ArrowRowWriter implements RowHandler, AutoCloseable {
+
+    public static final String MEDIA_TYPE = "application/vnd.apache.arrow.stream";
+
+    private static final int BATCH_ROWS = 8192;
+
+    public enum ColumnType {
+        NUMBER, BOOLEAN, TIMESTAMP, TEXT;
+
+        /**
+         * The type of a single value, or null when it is blank.
+         */
+        static ColumnType of(Object value) {
+            if (isBlank(value)) return null;
+            if (value instanceof Number) return NUMBER;
+            if (value instanceof Boolean) return BOOLEAN;
+            if (value instanceof Date) return TIMESTAMP;
+            return value instanceof String text && isNumeric(text) ? NUMBER : TEXT;
+        }
+
+        /**
+         * The narrowest type holding values of both types; null stands for no values yet.
+         */
+        static ColumnType widen(ColumnType current, ColumnType next) {
+            if (current == null) return next;
+            if (next == null || next == current) return current;
+            return TEXT;
+        }
+    }
+
+    private final OutputStream out;
+    private final BufferAllocator allocator = new RootAllocator();
+    private ColumnType[] types;
+    private String[] keys;
+    private int[] columns;
+    private final List<Object[]> pending = new ArrayList<>();
+
+    private VectorSchemaRoot root;
+    private FieldVector[] vectors;
+    private VarCharVector[] dictionaries;
+    private List<Map<String, Integer>> codes;
+    private ArrowStreamWriter writer;
+    private int batchRows;
+
+    public ArrowRowWriter(OutputStream out) {
+        this(out, null);
+    }
+
+    /**
+     * types holds one type per key of the headers, or is null to take them from the first batch.
+     */
+    public ArrowRowWriter(OutputStream out, ColumnType[] types) {
+        // Closing the Arrow writer closes its channel; the response stream belongs to the container
+        this.out = new FilterOutputStream(out) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                this.out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+            }
+        };
+        this.types = types;
+    }
+
+    /**
+     * Writes a parsed table, with column types taken from all of its rows.
+     */
+    public static void writeTable(DataTable table, OutputStream out) throws IOException {
+        try (ArrowRowWriter writer = new ArrowRowWriter(out, columnTypes(table))) {
+            writer.headers(table.getHeaders());
+            Object[] values = new Object[table.getHeaders().size()];
+            for (int row = 0; row < table.getRowCount(); row++) {
+                for (int c = 0; c < values.length; c++) {
+                    values[c] = table.getValue(row, c);
+                }
+                writer.row(values);
+            }
+            writer.finish();
+        }
+    }
+
+    /**
+     * Writes a Highcharts config as a category column followed by one float64 column per series.
+     */
+    public static void writeChart(Map<?, ?> config, OutputStream out) throws IOException {
+        List<?> categories = (List<?>) config.get("categories");
+        List<?> series = (List<?>) config.get("series");
+        if (categories == null || series == null) {
+            throw new IllegalArgumentException("Not a chart config");
+        }
+
+        List<String> headers = new ArrayList<>();
+        headers.add("category");
+        List<Object> data = new ArrayList<>();
+        for (Object serie : series) {
+            headers.add(String.valueOf(((Map<?, ?>) serie).get("name")));
+            data.add(((Map<?, ?>) serie).get("data"));
+        }
+
+        ColumnType[] types = new ColumnType[headers.size()];
+        types[0] = ColumnType.TEXT;
+        for (int s = 1; s < types.length; s++) {
+            types[s] = ColumnType.NUMBER;
+        }
+
+        try (ArrowRowWriter writer = new ArrowRowWriter(out, types)) {
+            writer.headers(headers);
+            Object[] values = new Object[headers.size()];
+            for (int i = 0; i < categories.size(); i++) {
+                values[0] = categories.get(i);
+                for (int s = 0; s < data.size(); s++) {
+                    values[s + 1] = data.get(s) instanceof double[] points ? (Object) points[i] : ((List<?>) data.get(s)).get(i);
+                }
+                writer.row(values);
+            }
+            writer.finish();
+        }
+    }
+
+    @Override
+    public void headers(List<String> headers) {
+        // A repeated header keeps its first position but takes the last column's value, like JsonRowWriter
+        Map<String, Integer> layout = new LinkedHashMap<>();
+        for (int i = 0; i < headers.size(); i++) {
+            layout.put(headers.get(i), i);
+        }
+        keys = layout.keySet().toArray(new String[0]);
+        columns = layout.values().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Override
+    public void row(Object[] values) throws IOException {
+        if (writer == null && types == null) {
+            // Readers may reuse the array, and these rows are only written once the batch is full
+            pending.add(values.clone());
+            if (pending.size() == BATCH_ROWS) start();
+            return;
+        }
+        if (writer == null) start();
+        set(values);
+    }
+
+    /**
+     * Writes the last batch and the end of the stream.
+     */
+    public void finish() throws IOException {
+        if (keys == null) headers(List.of());
+        if (writer == null) start();
+        writeBatch();
+        writer.end();
+    }
+
+    private void start() throws IOException {
+        if (types == null) {
+            types = new ColumnType[keys.length];
+            for (Object[] values : pending) {
+                for (int k = 0; k < keys.length; k++) {
+                    types[k] = ColumnType.widen(types[k], ColumnType.of(value(values, columns[k])));
+                }
+            }
+        }
+
+        vectors = new FieldVector[keys.length];
+        dictionaries = new VarCharVector[keys.length];
+        codes = new ArrayList<>(keys.length);
+        DictionaryProvider.MapDictionaryProvider provider = new DictionaryProvider.MapDictionaryProvider();
+        for (int k = 0; k < keys.length; k++) {
+            ColumnType type = types[k] != null ? types[k] : ColumnType.TEXT;
+            types[k] = type;
+            Field field;
+            switch (type) {
+                case NUMBER:
+                    field = Field.nullable(keys[k], new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE));
+                    break;
+                case BOOLEAN:
+                    field = Field.nullable(keys[k], ArrowType.Bool.INSTANCE);
+                    break;
+                case TIMESTAMP:
+                    field = Field.nullable(keys[k], new ArrowType.Timestamp(TimeUnit.MILLISECOND, "UTC"));
+                    break;
+                default:
+                    ArrowType.Int index = new ArrowType.Int(32, true);
+                    DictionaryEncoding encoding = new DictionaryEncoding(k, false, index);
+                    field = new Field(keys[k], new FieldType(true, index, encoding), null);
+                    dictionaries[k] = new VarCharVector("dictionary-" + k, allocator);
+                    provider.put(new Dictionary(dictionaries[k], encoding));
+                    break;
+            }
+            vectors[k] = field.createVector(allocator);
+            codes.add(type == ColumnType.TEXT ? new HashMap<>() : null);
+        }
+
+        root = new VectorSchemaRoot(List.of(vectors));
+        writer = new ArrowStreamWriter(root, provider, Channels.newChannel(out));
+        writer.start();
+
+        for (Object[] values : pending) {
+            set(values);
+        }
+        pending.clear();
+    }
+
+    private void set(Object[] values) throws IOException {
+        int row = batchRows;
+        for (int k = 0; k < keys.length; k++) {
+            Object value = value(values, columns[k]);
+            switch (types[k]) {
+                case NUMBER:
+                    Double number = number(value);
+                    if (number != null) ((Float8Vector) vectors[k]).setSafe(row, number);
+                    else ((Float8Vector) vectors[k]).setNull(row);
+                    break;
+                case BOOLEAN:
+                    if (value instanceof Boolean bool) ((BitVector) vectors[k]).setSafe(row, bool ? 1 : 0);
+                    else ((BitVector) vectors[k]).setNull(row);
+                    break;
+                case TIMESTAMP:
+                    if (value instanceof Date date) ((TimeStampMilliTZVector) vectors[k]).setSafe(row, date.getTime());
+                    else ((TimeStampMilliTZVector) vectors[k]).setNull(row);
+                    break;
+                default:
+                    setText((IntVector) vectors[k], dictionaries[k], codes.get(k), row, value);
+                    break;
+            }
+        }
+        if (++batchRows == BATCH_ROWS) {
+            writeBatch();
+        }
+    }
+
+    private static void setText(IntVector indices, VarCharVector dictionary, Map<String, Integer> codes, int row, Object value) {
+        if (isBlank(value)) {
+            indices.setNull(row);
+            return;
+        }
+        String text = value instanceof Date date ? date.toInstant().toString() : String.valueOf(value);
+        Integer code = codes.get(text);
+        if (code == null) {
+            code = codes.size();
+            codes.put(text, code);
+            dictionary.setSafe(code, text.getBytes(StandardCharsets.UTF_8));
+        }
+        indices.setSafe(row, code);
+    }
+
+    private void writeBatch() throws IOException {
+        if (batchRows == 0) return;
+        for (int k = 0; k < keys.length; k++) {
+            if (dictionaries[k] != null) dictionaries[k].setValueCount(codes.get(k).size());
+        }
+        root.setRowCount(batchRows);
+        writer.writeBatch();
+        out.flush();
+
+        for (int k = 0; k < keys.length; k++) {
+            vectors[k].reset();
+            if (dictionaries[k] != null) {
+                dictionaries[k].reset();
+                codes.get(k).clear();
+            }
+        }
+        batchRows = 0;
+    }
+
+    @Override
+    public void close() {
+        try {
+            // Also frees the copies of the last dictionaries the writer keeps to spot changes
+            if (writer != null) writer.close();
+        } finally {
+            if (root != null) root.close();
+            if (dictionaries != null) {
+                for (VarCharVector dictionary : dictionaries) {
+                    if (dictionary != null) dictionary.close();
+                }
+            }
+            allocator.close();
+        }
+    }
+
+    /**
+     * Column types for the keys of a table, from every row. Text is numeric when every
+     * non-blank value in the column is.
+     */
+    public static ColumnType[] columnTypes(DataTable table) {
+        List<String> keys = table.getKeys();
+        ColumnType[] types = new ColumnType[keys.size()];
+        for (int k = 0; k < types.length; k++) {
+            int column = table.getKeyColumn(k);
+            ColumnType[] byCode = new ColumnType[table.getDictionarySize(column)];
+            for (int code = 0; code < byCode.length; code++) {
+                byCode[code] = ColumnType.of(table.getDictionaryValue(column, code));
+            }
+
+            ColumnType type = null;
+            for (int row = 0; row < table.getRowCount() && type != ColumnType.TEXT; row++) {
+                switch (table.getKind(row, column)) {
+                    case DataTable.BLANK:
+                        break;
+                    case DataTable.STRING:
+                        type = ColumnType.widen(type, byCode[table.getCode(row, column)]);
+                        break;
+                    case DataTable.BOOLEAN:
+                        type = ColumnType.widen(type, ColumnType.BOOLEAN);
+                        break;
+                    case DataTable.DATE:
+                        type = ColumnType.widen(type, ColumnType.TIMESTAMP);
+                        break;
+                    default:
+                        type = ColumnType.widen(type, ColumnType.NUMBER);
+                        break;
+                }
+            }
+            types[k] = type;
+        }
+        return types;
+    }
+
+    private static Object value(Object[] values, int column) {
+        return column < values.length ? values[column] : null;
+    }
+
+    private static Double number(Object value) {
+        if (value instanceof Number number) return number.doubleValue();
+        if (value instanceof String text && isNumeric(text)) return Double.parseDouble(text);
+        return null;
+    }
+
+    /**
+     * Numeric text, except codes with a leading zero such as "007", which would lose it as numbers.
+     */
+    private static boolean isNumeric(String text) {
+        if (!NumberParser.isNumber(text)) return false;
+        String trimmed = text.trim();
+        int start = trimmed.startsWith("-") || trimmed.startsWith("+") ? 1 : 0;
+        return !(trimmed.length() > start + 1 && trimmed.charAt(start) == '0' && Character.isDigit(trimmed.charAt(start + 1)));
+    }
+
+    private static boolean isBlank(Object value) {
+        return value == null || "".equals(value);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.chartapp.service;
+
+import com.example.chartapp.model.Chart;
+import com.example.chartapp.repository.ChartRepository;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Saves charts one chunk per transaction so Hibernate can send each chunk as JDBC batches.
+ *
+ * If a chunk fails, it is retried one chart per transaction, so a single bad row
+ * only fails itself. Charts are added to the search index once their transaction has committed.
+ */
+@Service
+public class ChartBatchService {
+
+    public record ItemResult(int index, String status, Long id, String error) {
+
+        public static ItemResult saved(int index, long id) {
+            return new ItemResult(index, "saved", id, null);
+        }
+
+        public static ItemResult invalid(int index, String error) {
+            return new ItemResult(index, "invalid", null, error);
+        }
+
+        public static ItemResult failed(int index, String error) {
+            return new ItemResult(index, "failed", null, error);
+        }
+    }
+
+    private final ChartRepository chartRepository;
+    private final ChartSearchIndex chartSearchIndex;
+    private final TransactionTemplate transactionTemplate;
+
+    public ChartBatchService(ChartRepository chartRepository, ChartSearchIndex chartSearchIndex,
+                             PlatformTransactionManager transactionManager) {
+        this.chartRepository = chartRepository;
+        this.chartSearchIndex = chartSearchIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Saves one chunk. indexes holds each chart's position in the whole import.
+     */
+    public List<ItemResult> saveChunk(List<Chart> charts, List<Integer> indexes) {
+        List<ItemResult> results = new ArrayList<>(charts.size());
+        List<Chart> saved = null;
+        try {
+            saved = transactionTemplate.execute(status -> chartRepository.saveAll(charts));
+        } catch (RuntimeException e) {
+            // Fall through and find out which charts were at fault
+        }
+        if (saved != null) {
+            // Outside the try: once committed, the chunk must not be inserted again
+            chartSearchIndex.addAll(saved);
+            for (int i = 0; i < saved.size(); i++) {
+                results.add(ItemResult.saved(indexes.get(i), saved.get(i).getId()));
+            }
+            return results;
+        }
+
+        for (int i = 0; i < charts.size(); i++) {
+            Chart chart = charts.get(i);
+            // Ids handed out to the rolled-back chunk are not reusable
+            chart.setId(null);
+            Chart savedChart;
+            try {
+                savedChart = transactionTemplate.execute(status -> chartRepository.save(chart));
+            } catch (RuntimeException e) {
+                results.add(ItemResult.failed(indexes.get(i), NestedExceptionUtils.getMostSpecificCause(e).getMessage()));
+                continue;
+            }
+            chartSearchIndex.add(savedChart);
+            results.add(ItemResult.saved(indexes.get(i), savedChart.getId()));
+        }
+        return results;
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.chartapp.service;
+
+import com.example.chartapp.model.Chart;
+import com.example.chartapp.repository.ChartRepository;
+import com.example.chartapp.repository.ChartSummary;
+import jakarta.annotation.PostConstruct;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory trigram index over chart names, for substring search without scanning the table.
+ *
+ * Every chart gets a dense document number, and each trigram of its lower-cased
+ * name maps to an ascending list of those numbers. A query of three or more
+ * characters intersects the lists of its own trigrams, starting with the
+ * shortest, and then checks the few candidates left. Shorter queries scan the
+ * names, which is still fast at this size. The index is built from the database
+ * at startup and updated by whoever saves a chart; it is never the source of truth.
+ */
+@Service
+public class ChartSearchIndex {
+
+    private static final int LOAD_PAGE_SIZE = 1000;
+
+    public record Result(int total, List<ChartSummary> items) {
+    }
+
+    private record Match(Entry entry, int rank) {
+    }
+
+    private static final Comparator<Match> RANKING = Comparator.comparingInt(Match::rank)
+            .thenComparingInt(match -> match.entry().key.length())
+            .thenComparingLong(match -> match.entry().id);
+
+    private static final class Entry implements ChartSummary {
+        private final Long id;
+        private final String name;
+        private final Long size;
+        private final Instant createdAt;
+        private final String key;
+        private boolean removed;
+
+        Entry(Long id, String name, Long size, Instant createdAt) {
+            this.id = id;
+            this.name = name;
+            this.size = size;
+            this.createdAt = createdAt;
+            this.key = normalize(name);
+        }
+
+        @Override
+        public Long getId() {
+            return id;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Long getSize() {
+            return size;
+        }
+
+        @Override
+        public Instant getCreatedAt() {
+            return createdAt;
+        }
+    }
+
+    /**
+     * Ascending document numbers; documents are only ever appended, so adding keeps the order.
+     */
+    private static final class Postings {
+        private int[] docs = new int[4];
+        private int size;
+
+        void add(int doc) {
+            if (size > 0 && docs[size - 1] == doc) return;
+            if (size == docs.length) docs = Arrays.copyOf(docs, size * 2);
+            docs[size++] = doc;
+        }
+    }
+
+    private final ChartRepository chartRepository;
+    private final List<Entry> documents = new ArrayList<>();
+    private final Map<Long, Integer> documentById = new HashMap<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public ChartSearchIndex(ChartRepository chartRepository) {
+        this.chartRepository = chartRepository;
+    }
+
+    @PostConstruct
+    public void load() {
+        long after = 0;
+        List<ChartSummary> page;
+        do {
+            page = chartRepository.findSummariesAfter(after, PageRequest.of(0, LOAD_PAGE_SIZE));
+            lock.writeLock().lock();
+            try {
+                for (ChartSummary summary : page) {
+                    put(new Entry(summary.getId(), summary.getName(), summary.getSize(), summary.getCreatedAt()));
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            if (!page.isEmpty()) after = page.get(page.size() - 1).getId();
+        } while (page.size() == LOAD_PAGE_SIZE);
+    }
+
+    /**
+     * Indexes a saved chart, replacing any earlier entry with the same id.
+     */
+    public void add(Chart chart) {
+        addAll(List.of(chart));
+    }
+
+    public void addAll(List<Chart> charts) {
+        lock.writeLock().lock();
+        try {
+            for (Chart chart : charts) {
+                if (chart.getId() == null) continue;
+                put(new Entry(chart.getId(), chart.getName(), chart.getConfigSize(), chart.getCreatedAt()));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Charts whose name contains the query, ignoring case. An exact name ranks first,
+     * then names starting with the query, then matches at the start of a word, then the
+     * rest; ties go to the shorter name and then the older chart.
+     */
+    public Result search(String query, int page, int size) {
+        String needle = normalize(query);
+        // Only the matches up to the end of the requested page are kept, the worst on top
+        int limit = (int) Math.min((long) page * size + size, Integer.MAX_VALUE);
+        PriorityQueue<Match> best = new PriorityQueue<>(RANKING.reversed());
+        int total = 0;
+
+        lock.readLock().lock();
+        try {
+            if (needle.length() < 3) {
+                for (Entry entry : documents) {
+                    if (!entry.removed && entry.key.contains(needle)) {
+                        total++;
+                        offer(best, limit, new Match(entry, rank(entry.key, needle)));
+                    }
+                }
+            } else {
+                for (int doc : candidates(needle)) {
+                    Entry entry = documents.get(doc);
+                    // Sharing every trigram does not guarantee they are adjacent, so check
+                    if (!entry.removed && entry.key.contains(needle)) {
+                        total++;
+                        offer(best, limit, new Match(entry, rank(entry.key, needle)));
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Match> ranked = new ArrayList<>(best);
+        ranked.sort(RANKING);
+        List<ChartSummary> items = new ArrayList<>();
+        for (int i = (int) Math.min((long) page * size, ranked.size()); i < ranked.size(); i++) {
+            items.add(ranked.get(i).entry());
+        }
+        return new Result(total, items);
+    }
+
+    private static void offer(PriorityQueue<Match> best, int limit, Match match) {
+        if (best.size() < limit) {
+            best.add(match);
+        } else if (RANKING.compare(match, best.peek()) < 0) {
+            best.poll();
+            best.add(match);
+        }
+    }
+
+    private int[] candidates(String needle) {
+        List<Postings> lists = new ArrayList<>();
+        for (String trigram : trigrams(needle)) {
+            Postings list = postings.get(trigram);
+            if (list == null) return new int[0];
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+
+        int[] result = Arrays.copyOf(lists.get(0).docs, lists.get(0).size);
+        int count = result.length;
+        for (int i = 1; i < lists.size() && count > 0; i++) {
+            count = intersect(result, count, lists.get(i));
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Keeps the first count docs of result that also appear in list, in place, and returns how many are left.
+     */
+    private static int intersect(int[] result, int count, Postings list) {
+        int kept = 0;
+        int j = 0;
+        for (int i = 0; i < count && j < list.size; i++) {
+            int doc = result[i];
+            // Long lists are searched rather than walked, since result is usually much shorter
+            int found = Arrays.binarySearch(list.docs, j, list.size, doc);
+            if (found >= 0) {
+                result[kept++] = doc;
+                j = found + 1;
+            } else {
+                j = -found - 1;
+            }
+        }
+        return kept;
+    }
+
+    private void put(Entry entry) {
+        Integer previous = documentById.get(entry.id);
+        if (previous != null) {
+            Entry old = documents.get(previous);
+            if (old.key.equals(entry.key)) {
+                documents.set(previous, entry);
+                return;
+            }
+            // Postings cannot drop a document cheaply, so the old one is skipped from now on
+            old.removed = true;
+        }
+
+        int doc = documents.size();
+        documents.add(entry);
+        documentById.put(entry.id, doc);
+        for (String trigram : trigrams(entry.key)) {
+            postings.computeIfAbsent(trigram, t -> new Postings()).add(doc);
+        }
+    }
+
+    private static int rank(String key, String needle) {
+        if (key.equals(needle)) return 0;
+        if (key.startsWith(needle)) return 1;
+        int at = key.indexOf(needle);
+        if (at > 0 && !Character.isLetterOrDigit(key.charAt(at - 1))) return 2;
+        return 3;
+    }
+
+    private static Set<String> trigrams(String key) {
+        Set<String> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= key.length(); i++) {
+            trigrams.add(key.substring(i, i + 3));
+        }
+        return trigrams;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+}
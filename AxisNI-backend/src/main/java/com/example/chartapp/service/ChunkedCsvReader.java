@@ -0,0 +1,438 @@
+package com.example.chartapp.service;
+
+import com.opencsv.CSVReader;
+import com.opencsv.CSVReaderBuilder;
+import com.opencsv.RFC4180ParserBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
+import java.io.Reader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a CSV file into a DataTable by parsing byte ranges of it in parallel.
+ *
+ * The file is memory-mapped in segments of up to 1 GiB, so files past 2 GiB are
+ * split too, and cut into roughly equal chunks that may cross segment boundaries. A first pass counts
+ * the quotes in every chunk, so each chunk can guess whether it starts inside a
+ * quoted field and begin at the first line break that is not. Each chunk then
+ * parses its records into its own DataTable.Builder, finishing the record that
+ * crosses its end. The guesses are checked in file order: a chunk that did not
+ * start where the previous one stopped, as happens around stray quotes, is parsed
+ * again from the right place. The tables are concatenated in file order.
+ *
+ * Records follow RFC 4180: a quote only opens a quoted field at the start of a
+ * field, a doubled quote inside one is a literal quote and line breaks inside
+ * quotes are kept, CRLF as LF. Text after a closing quote is kept as it is.
+ * Cutting on bytes is safe in UTF-8 and the single-byte charsets, where commas,
+ * quotes and line breaks are never part of another character; files in other
+ * charsets are read sequentially with OpenCSV's RFC 4180 parser instead.
+ */
+public class ChunkedCsvReader {
+
+    private static final byte QUOTE = '"';
+    private static final byte COMMA = ',';
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    // More chunks than workers, so a slow chunk does not hold up the others
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    // One mapping is limited to 2 GiB; a power of two keeps position lookups to a shift and a mask
+    private static final int SEGMENT_SHIFT = 30;
+
+    /**
+     * The charset a byte order mark names, and its length in bytes.
+     */
+    record Bom(Charset charset, int length) {
+
+        static final Bom NONE = new Bom(null, 0);
+
+        static Bom of(byte[] head, int length) {
+            if (length >= 3 && (head[0] & 0xFF) == 0xEF && (head[1] & 0xFF) == 0xBB && (head[2] & 0xFF) == 0xBF) {
+                return new Bom(StandardCharsets.UTF_8, 3);
+            }
+            if (length >= 2 && (head[0] & 0xFF) == 0xFE && (head[1] & 0xFF) == 0xFF) {
+                return new Bom(StandardCharsets.UTF_16BE, 2);
+            }
+            if (length >= 2 && (head[0] & 0xFF) == 0xFF && (head[1] & 0xFF) == 0xFE) {
+                return new Bom(StandardCharsets.UTF_16LE, 2);
+            }
+            return NONE;
+        }
+    }
+
+    private final ParseMetrics metrics;
+    private final ForkJoinPool pool;
+    private final int minChunkBytes;
+    private final int segmentShift;
+
+    /**
+     * Chunks are at least minChunkBytes long; smaller files are read as a single chunk.
+     */
+    public ChunkedCsvReader(ParseMetrics metrics, ForkJoinPool pool, int minChunkBytes) {
+        this(metrics, pool, minChunkBytes, SEGMENT_SHIFT);
+    }
+
+    ChunkedCsvReader(ParseMetrics metrics, ForkJoinPool pool, int minChunkBytes, int segmentShift) {
+        this.metrics = metrics;
+        this.pool = pool;
+        this.minChunkBytes = minChunkBytes;
+        this.segmentShift = segmentShift;
+    }
+
+    /**
+     * Reads the file in the given charset, or in the one its byte order mark names.
+     * The first record holds the headers; an empty file gives an empty table.
+     */
+    public DataTable read(File file, Charset charset) throws Exception {
+        long length = file.length();
+        byte[] head = new byte[3];
+        int headLength;
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            headLength = in.readNBytes(head, 0, head.length);
+        }
+        Bom bom = Bom.of(head, headLength);
+        Charset actual = bom.charset() != null ? bom.charset() : charset;
+
+        long iterateStart = System.nanoTime();
+        DataTable table;
+        if (!splittable(actual)) {
+            DataTable.Builder builder = new DataTable.Builder();
+            try (Reader reader = open(Files.newInputStream(file.toPath()), charset)) {
+                readRecords(reader, builder);
+            }
+            table = builder.build();
+        } else {
+            MappedFile buffer;
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                buffer = new MappedFile(channel, length, segmentShift);
+            }
+            table = read(buffer, bom.length(), actual);
+        }
+        metrics.phase(ParseMetrics.SHEET_ITERATE, ParseMetrics.CSV).record(System.nanoTime() - iterateStart, TimeUnit.NANOSECONDS);
+        return table;
+    }
+
+    private DataTable read(MappedFile buffer, int start, Charset charset) throws Exception {
+        long size = buffer.size();
+        if (start >= size) {
+            DataTable.Builder empty = new DataTable.Builder();
+            empty.headers(List.of());
+            return empty.build();
+        }
+
+        Tokenizer headerTokenizer = new Tokenizer(buffer, charset, -1);
+        long bodyStart = headerTokenizer.record(start);
+        List<String> headers = Arrays.asList(Arrays.copyOf(headerTokenizer.values, headerTokenizer.count));
+
+        long bodyLength = size - bodyStart;
+        int chunkCount = (int) Math.max(1, Math.min((long) pool.getParallelism() * CHUNKS_PER_WORKER, bodyLength / minChunkBytes));
+        long[] bounds = new long[chunkCount + 1];
+        for (int i = 0; i <= chunkCount; i++) {
+            bounds[i] = bodyStart + bodyLength * i / chunkCount;
+        }
+
+        boolean[] quotedAtStart = quotedAtStart(buffer, bounds);
+
+        Chunk[] chunks = new Chunk[chunkCount];
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < chunkCount; i++) {
+            int index = i;
+            tasks.add(() -> {
+                long from = index == 0 ? bodyStart : guessStart(buffer, bounds[index], quotedAtStart[index]);
+                chunks[index] = parse(buffer, charset, headers, from, bounds[index + 1]);
+                return null;
+            });
+        }
+        invokeAll(tasks);
+
+        List<DataTable> tables = new ArrayList<>(chunkCount);
+        long expected = bodyStart;
+        for (int i = 0; i < chunkCount; i++) {
+            Chunk chunk = chunks[i];
+            if (chunk.from != expected) {
+                // The guess was wrong, usually because of a stray quote before it
+                chunk = parse(buffer, charset, headers, expected, bounds[i + 1]);
+            }
+            if (chunk.failure != null) {
+                throw chunk.failure;
+            }
+            tables.add(chunk.table);
+            expected = chunk.end;
+        }
+        return DataTable.concat(tables);
+    }
+
+    /**
+     * Whether each chunk starts inside quotes, going by the parity of the quotes before it.
+     */
+    private boolean[] quotedAtStart(MappedFile buffer, long[] bounds) throws Exception {
+        int chunkCount = bounds.length - 1;
+        long[] quotes = new long[chunkCount];
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < chunkCount; i++) {
+            int index = i;
+            tasks.add(() -> {
+                long count = 0;
+                for (long pos = bounds[index]; pos < bounds[index + 1]; pos++) {
+                    if (buffer.get(pos) == QUOTE) count++;
+                }
+                quotes[index] = count;
+                return null;
+            });
+        }
+        invokeAll(tasks);
+
+        boolean[] quoted = new boolean[chunkCount];
+        long before = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            quoted[i] = (before & 1) == 1;
+            before += quotes[i];
+        }
+        return quoted;
+    }
+
+    /**
+     * The first record start at or after pos, assuming pos is inside quotes when quoted is set.
+     */
+    private static long guessStart(MappedFile buffer, long pos, boolean quoted) {
+        long size = buffer.size();
+        if (!quoted && pos > 0 && buffer.get(pos - 1) == LF) {
+            return pos;
+        }
+        while (pos < size) {
+            byte b = buffer.get(pos++);
+            if (b == QUOTE) {
+                quoted = !quoted;
+            } else if (b == LF && !quoted) {
+                return pos;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Parses the records starting in [from, limit). A failure is kept rather than thrown,
+     * since a chunk that started in the wrong place is parsed again.
+     */
+    private static Chunk parse(MappedFile buffer, Charset charset, List<String> headers, long from, long limit) {
+        DataTable.Builder builder = new DataTable.Builder();
+        builder.headers(headers);
+        Tokenizer tokenizer = new Tokenizer(buffer, charset, headers.size());
+        long pos = from;
+        try {
+            while (pos < limit) {
+                pos = tokenizer.record(pos);
+                Arrays.fill(tokenizer.values, Math.min(tokenizer.count, headers.size()), headers.size(), "");
+                builder.row(tokenizer.values);
+            }
+        } catch (Exception e) {
+            return new Chunk(from, pos, null, e);
+        }
+        return new Chunk(from, pos, builder.build(), null);
+    }
+
+    private void invokeAll(List<Callable<Void>> tasks) throws Exception {
+        if (tasks.size() == 1) {
+            tasks.get(0).call();
+            return;
+        }
+        pool.invokeAll(tasks);
+    }
+
+    private static boolean splittable(Charset charset) {
+        String name = charset.name();
+        return charset.equals(StandardCharsets.UTF_8) || charset.equals(StandardCharsets.US_ASCII)
+                || name.startsWith("ISO-8859-") || name.startsWith("windows-125");
+    }
+
+    /**
+     * A reader over the stream in the given charset, or in the one its byte order mark
+     * names; the mark itself is skipped.
+     */
+    static Reader open(InputStream in, Charset charset) throws IOException {
+        PushbackInputStream pushback = new PushbackInputStream(in, 3);
+        byte[] head = new byte[3];
+        int length = pushback.readNBytes(head, 0, head.length);
+        Bom bom = Bom.of(head, length);
+        pushback.unread(head, bom.length(), length - bom.length());
+        return new InputStreamReader(pushback, bom.charset() != null ? bom.charset() : charset);
+    }
+
+    /**
+     * Reads records one at a time with OpenCSV's RFC 4180 parser, passing the first as
+     * headers. Short records are padded with "" and long ones cut to the headers. This
+     * agrees with the chunked parser except on a line with an odd number of stray quotes
+     * in unquoted fields, which OpenCSV joins with the next line.
+     */
+    static void readRecords(Reader reader, RowHandler handler) throws Exception {
+        try (CSVReader csvReader = new CSVReaderBuilder(reader).withCSVParser(new RFC4180ParserBuilder().build()).build()) {
+            String[] headers = csvReader.readNext();
+            if (headers == null) return;
+            handler.headers(Arrays.asList(headers));
+
+            String[] values;
+            while ((values = csvReader.readNext()) != null) {
+                Object[] row = new Object[headers.length];
+                for (int i = 0; i < headers.length; i++) {
+                    row[i] = i < values.length ? values[i] : "";
+                }
+                handler.row(row);
+            }
+        }
+    }
+
+    private record Chunk(long from, long end, DataTable table, Exception failure) {
+    }
+
+    /**
+     * A read-only mapping of a whole file as consecutive segments, addressed by file offset.
+     * Absolute reads leave no state behind, so one instance is shared by all chunks.
+     */
+    private static final class MappedFile {
+        private final MappedByteBuffer[] segments;
+        private final long size;
+        private final int shift;
+        private final long mask;
+
+        MappedFile(FileChannel channel, long size, int shift) throws IOException {
+            this.size = size;
+            this.shift = shift;
+            this.mask = (1L << shift) - 1;
+            segments = new MappedByteBuffer[(int) ((size + mask) >>> shift)];
+            for (int i = 0; i < segments.length; i++) {
+                long offset = (long) i << shift;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset, Math.min(mask + 1, size - offset));
+            }
+        }
+
+        long size() {
+            return size;
+        }
+
+        byte get(long pos) {
+            return segments[(int) (pos >>> shift)].get((int) (pos & mask));
+        }
+
+        void get(long pos, byte[] dst, int offset, int length) {
+            while (length > 0) {
+                MappedByteBuffer segment = segments[(int) (pos >>> shift)];
+                int index = (int) (pos & mask);
+                int n = Math.min(length, segment.limit() - index);
+                segment.get(index, dst, offset, n);
+                pos += n;
+                offset += n;
+                length -= n;
+            }
+        }
+    }
+
+    /**
+     * Splits records into fields. Fields past width are skipped; a width of -1 keeps them all.
+     */
+    private static final class Tokenizer {
+        private final MappedFile buffer;
+        private final Charset charset;
+        private final int width;
+        private final long size;
+        private byte[] scratch = new byte[256];
+        String[] values;
+        int count;
+
+        Tokenizer(MappedFile buffer, Charset charset, int width) {
+            this.buffer = buffer;
+            this.charset = charset;
+            this.width = width;
+            this.size = buffer.size();
+            this.values = new String[Math.max(width, 16)];
+        }
+
+        /**
+         * Reads the record starting at pos into values and returns where the next one starts.
+         */
+        long record(long pos) {
+            count = 0;
+            while (true) {
+                int length = 0;
+                if (pos < size && buffer.get(pos) == QUOTE) {
+                    long open = pos++;
+                    while (true) {
+                        if (pos >= size) {
+                            throw new IllegalArgumentException("Unterminated quoted field starting at byte " + open);
+                        }
+                        byte b = buffer.get(pos++);
+                        if (b == QUOTE) {
+                            if (pos < size && buffer.get(pos) == QUOTE) {
+                                length = append(length, QUOTE);
+                                pos++;
+                            } else {
+                                break;
+                            }
+                        } else if (b != CR || pos >= size || buffer.get(pos) != LF) {
+                            length = append(length, b);
+                        }
+                    }
+                }
+
+                long start = pos;
+                while (pos < size) {
+                    byte b = buffer.get(pos);
+                    if (b == COMMA || b == LF) break;
+                    pos++;
+                }
+                long end = pos;
+                if (end > start && buffer.get(end - 1) == CR && (end == size || buffer.get(end) == LF)) {
+                    end--;
+                }
+                if (end > start) {
+                    int fieldLength = Math.toIntExact(end - start);
+                    ensure(length + fieldLength);
+                    buffer.get(start, scratch, length, fieldLength);
+                    length += fieldLength;
+                }
+                add(length);
+
+                if (pos >= size) return size;
+                if (buffer.get(pos++) == LF) return pos;
+            }
+        }
+
+        private void add(int length) {
+            if (width >= 0 && count >= width) {
+                count++;
+                return;
+            }
+            if (count == values.length) {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[count++] = length == 0 ? "" : new String(scratch, 0, length, charset);
+        }
+
+        private int append(int length, byte b) {
+            ensure(length + 1);
+            scratch[length] = b;
+            return length + 1;
+        }
+
+        private void ensure(int capacity) {
+            if (capacity > scratch.length) {
+                scratch = Arrays.copyOf(scratch, Math.max(capacity, scratch.length * 2));
+            }
+        }
+    }
+}
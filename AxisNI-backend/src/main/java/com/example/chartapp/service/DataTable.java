@@ -0,0 +1,463 @@
+package com.example.chartapp.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Column-oriented table of parsed rows.
+ *
+ * Headers are stored once. Numbers, integers, booleans and dates live in a primitive
+ * double[] per column, strings are dictionary-encoded per column and blank
+ * cells are tracked in a bitmap. Serializes to the same JSON as the list of
+ * row maps it replaces.
+ */
+public class DataTable extends JsonSerializable.Base {
+
+    public static final byte BLANK = 0;
+    public static final byte STRING = 1;
+    public static final byte NUMBER = 2;
+    public static final byte BOOLEAN = 3;
+    public static final byte DATE = 4;
+    public static final byte INTEGER = 5;
+    private static final byte MIXED = 6;
+
+    private final List<String> headers;
+    private final Column[] columns;
+    private final int rowCount;
+    private final String[] keys;
+    private final int[] keyColumns;
+
+    private DataTable(List<String> headers, Column[] columns, int rowCount) {
+        this.headers = headers;
+        this.columns = columns;
+        this.rowCount = rowCount;
+
+        // A repeated header keeps its first position but takes the last column's value, like a LinkedHashMap
+        Map<String, Integer> layout = new LinkedHashMap<>();
+        for (int i = 0; i < headers.size(); i++) {
+            layout.put(headers.get(i), i);
+        }
+        this.keys = layout.keySet().toArray(new String[0]);
+        this.keyColumns = layout.values().stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Builds a table from row maps, using the first row's keys as headers.
+     */
+    public static DataTable fromRows(List<Map<String, Object>> rows) {
+        Builder builder = new Builder();
+        if (rows == null || rows.isEmpty()) {
+            builder.headers(List.of());
+            return builder.build();
+        }
+
+        List<String> headers = new ArrayList<>(rows.get(0).keySet());
+        builder.headers(headers);
+        for (Map<String, Object> row : rows) {
+            Object[] values = new Object[headers.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = row.get(headers.get(i));
+            }
+            builder.row(values);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Joins tables with the same headers, rows in the order given. Each column's
+     * dictionaries are appended rather than merged, so a string found in several
+     * parts has a code per part; nothing relies on codes being unique, and the
+     * duplicates are few next to the rows. The columns are joined in parallel.
+     */
+    public static DataTable concat(List<DataTable> parts) {
+        if (parts.size() == 1) return parts.get(0);
+
+        List<String> headers = parts.get(0).headers;
+        int rowCount = Math.toIntExact(parts.stream().mapToLong(DataTable::getRowCount).sum());
+        Column[] columns = new Column[headers.size()];
+        IntStream.range(0, columns.length).parallel().forEach(c -> columns[c] = concatColumn(parts, c, rowCount));
+        return new DataTable(headers, columns, rowCount);
+    }
+
+    private static Column concatColumn(List<DataTable> parts, int c, int rowCount) {
+        Column merged = new Column();
+        for (DataTable part : parts) {
+            Column col = part.columns[c];
+            if (col.kind == BLANK || col.kind == merged.kind) continue;
+            merged.kind = merged.kind == BLANK ? col.kind : MIXED;
+        }
+        for (DataTable part : parts) {
+            Column col = part.columns[c];
+            if (col.numbers != null && merged.numbers == null) merged.numbers = new double[rowCount];
+            if (col.codes != null && merged.codes == null) merged.codes = new int[rowCount];
+        }
+        if (merged.kind == MIXED) merged.kinds = new byte[rowCount];
+
+        merged.dictionary = new String[parts.stream().mapToInt(part -> dictionarySize(part.columns[c])).sum()];
+        int offset = 0;
+        int codeOffset = 0;
+        for (DataTable part : parts) {
+            Column col = part.columns[c];
+            int rows = part.rowCount;
+            if (col.numbers != null) {
+                System.arraycopy(col.numbers, 0, merged.numbers, offset, rows);
+            }
+            if (col.codes != null) {
+                System.arraycopy(col.dictionary, 0, merged.dictionary, codeOffset, col.dictionary.length);
+                for (int row = 0; row < rows; row++) {
+                    merged.codes[offset + row] = col.codes[row] + codeOffset;
+                }
+                codeOffset += col.dictionary.length;
+            }
+            if (merged.kinds != null) {
+                for (int row = 0; row < rows; row++) {
+                    merged.kinds[offset + row] = col.kinds != null ? col.kinds[row] : col.kind;
+                }
+            }
+            for (int row = col.blanks.nextSetBit(0); row >= 0 && row < rows; row = col.blanks.nextSetBit(row + 1)) {
+                merged.blanks.set(offset + row);
+            }
+            offset += rows;
+        }
+        return merged;
+    }
+
+    private static int dictionarySize(Column col) {
+        return col.codes != null ? col.dictionary.length : 0;
+    }
+
+    public List<String> getHeaders() {
+        return headers;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Distinct row keys in output order, as the keys of a row map would be.
+     */
+    public List<String> getKeys() {
+        return Arrays.asList(keys);
+    }
+
+    /**
+     * Column index holding the value for each entry of getKeys().
+     */
+    public int getKeyColumn(int keyIndex) {
+        return keyColumns[keyIndex];
+    }
+
+    public byte getKind(int row, int column) {
+        return columns[column].kindAt(row);
+    }
+
+    public boolean isBlank(int row, int column) {
+        return columns[column].blanks.get(row);
+    }
+
+    /**
+     * Numeric payload of a NUMBER, INTEGER, BOOLEAN (1 or 0) or DATE (epoch millis) cell.
+     */
+    public double getNumber(int row, int column) {
+        return columns[column].numbers[row];
+    }
+
+    /**
+     * Dictionary code of a STRING cell.
+     */
+    public int getCode(int row, int column) {
+        return columns[column].codes[row];
+    }
+
+    public int getDictionarySize(int column) {
+        return columns[column].dictionary.length;
+    }
+
+    public String getDictionaryValue(int column, int code) {
+        return columns[column].dictionary[code];
+    }
+
+    /**
+     * Cell value as the parsers produce it: String, Double, Long, Boolean, Date, or "" when blank.
+     */
+    public Object getValue(int row, int column) {
+        Column col = columns[column];
+        switch (col.kindAt(row)) {
+            case STRING:
+                return col.dictionary[col.codes[row]];
+            case NUMBER:
+                return col.numbers[row];
+            case INTEGER:
+                return (long) col.numbers[row];
+            case BOOLEAN:
+                return col.numbers[row] != 0;
+            case DATE:
+                return new Date((long) col.numbers[row]);
+            default:
+                return "";
+        }
+    }
+
+    /**
+     * Column values as doubles: numbers as-is, numeric strings parsed, anything else as missing.
+     */
+    public double[] toDoubles(int column, double missing) {
+        Column col = columns[column];
+        double[] parsed = new double[col.dictionary.length];
+        for (int code = 0; code < parsed.length; code++) {
+            parsed[code] = NumberParser.parseOrDefault(col.dictionary[code], missing);
+        }
+
+        double[] values = new double[rowCount];
+        for (int row = 0; row < rowCount; row++) {
+            byte kind = col.kindAt(row);
+            if (kind == NUMBER || kind == INTEGER) {
+                values[row] = col.numbers[row];
+            } else if (kind == STRING) {
+                values[row] = parsed[col.codes[row]];
+            } else {
+                values[row] = missing;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Column index for a row key, or -1 when there is no such key.
+     */
+    public int columnOf(String key) {
+        for (int k = 0; k < keys.length; k++) {
+            if (keys[k].equals(key)) return keyColumns[k];
+        }
+        return -1;
+    }
+
+    /**
+     * Rough heap footprint in bytes, used to weigh cached tables.
+     */
+    public long estimatedBytes() {
+        long bytes = 64;
+        for (String header : headers) {
+            bytes += 40 + 2L * header.length();
+        }
+        for (Column col : columns) {
+            bytes += 64 + col.blanks.size() / 8;
+            if (col.numbers != null) bytes += 8L * col.numbers.length;
+            if (col.codes != null) bytes += 4L * col.codes.length;
+            if (col.kinds != null) bytes += col.kinds.length;
+            for (String value : col.dictionary) {
+                bytes += 40 + 2L * value.length();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * A JSON view of rows [from, to), serialized like the whole table.
+     */
+    public JsonSerializable rows(int from, int to) {
+        int start = Math.max(0, Math.min(from, rowCount));
+        int end = Math.max(start, Math.min(to, rowCount));
+        return new JsonSerializable.Base() {
+            @Override
+            public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+                writeRows(gen, serializers, start, end);
+            }
+
+            @Override
+            public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+                serialize(gen, serializers);
+            }
+        };
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        writeRows(gen, serializers, 0, rowCount);
+    }
+
+    private void writeRows(JsonGenerator gen, SerializerProvider serializers, int from, int to) throws IOException {
+        gen.writeStartArray();
+        for (int row = from; row < to; row++) {
+            gen.writeStartObject();
+            for (int k = 0; k < keys.length; k++) {
+                gen.writeFieldName(keys[k]);
+                Column col = columns[keyColumns[k]];
+                switch (col.kindAt(row)) {
+                    case STRING:
+                        gen.writeString(col.dictionary[col.codes[row]]);
+                        break;
+                    case NUMBER:
+                        gen.writeNumber(col.numbers[row]);
+                        break;
+                    case INTEGER:
+                        gen.writeNumber((long) col.numbers[row]);
+                        break;
+                    case BOOLEAN:
+                        gen.writeBoolean(col.numbers[row] != 0);
+                        break;
+                    case DATE:
+                        serializers.defaultSerializeDateValue(new Date((long) col.numbers[row]), gen);
+                        break;
+                    default:
+                        gen.writeString("");
+                        break;
+                }
+            }
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+        serialize(gen, serializers);
+    }
+
+    private static final class Column {
+        // Kind shared by every non-blank cell, or MIXED once kinds are tracked per cell
+        byte kind = BLANK;
+        byte[] kinds;
+        double[] numbers;
+        int[] codes;
+        String[] dictionary;
+        final BitSet blanks = new BitSet();
+
+        byte kindAt(int row) {
+            if (blanks.get(row)) return BLANK;
+            return kinds != null ? kinds[row] : kind;
+        }
+    }
+
+    /**
+     * Accumulates handled rows into a DataTable.
+     */
+    public static class Builder implements RowHandler {
+
+        private static final int INITIAL_CAPACITY = 64;
+
+        private List<String> headers = List.of();
+        private Column[] columns = new Column[0];
+        private List<Map<String, Integer>> codeLookups = new ArrayList<>();
+        private List<List<String>> dictionaries = new ArrayList<>();
+        private int rowCount;
+        private int capacity;
+
+        @Override
+        public void headers(List<String> headers) {
+            this.headers = List.copyOf(headers);
+            columns = new Column[headers.size()];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = new Column();
+                codeLookups.add(new HashMap<>());
+                dictionaries.add(new ArrayList<>());
+            }
+        }
+
+        @Override
+        public void row(Object[] values) {
+            if (rowCount == capacity) {
+                grow(Math.max(INITIAL_CAPACITY, capacity * 2));
+            }
+            for (int c = 0; c < columns.length; c++) {
+                set(c, rowCount, c < values.length ? values[c] : "");
+            }
+            rowCount++;
+        }
+
+        public int getRowCount() {
+            return rowCount;
+        }
+
+        private void set(int c, int row, Object value) {
+            Column col = columns[c];
+
+            if (value == null || "".equals(value)) {
+                col.blanks.set(row);
+                return;
+            }
+
+            byte kind;
+            if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+                // Whole numbers from JSON input keep rendering without a decimal point
+                kind = INTEGER;
+                numbers(col)[row] = ((Number) value).longValue();
+            } else if (value instanceof Number number) {
+                kind = NUMBER;
+                numbers(col)[row] = number.doubleValue();
+            } else if (value instanceof Boolean bool) {
+                kind = BOOLEAN;
+                numbers(col)[row] = bool ? 1 : 0;
+            } else if (value instanceof Date date) {
+                kind = DATE;
+                numbers(col)[row] = date.getTime();
+            } else {
+                kind = STRING;
+                codes(col)[row] = encode(c, String.valueOf(value));
+            }
+
+            if (col.kind == BLANK) {
+                col.kind = kind;
+            } else if (col.kind != kind && col.kind != MIXED) {
+                // Second kind in this column: start tracking kinds per cell
+                col.kinds = new byte[capacity];
+                Arrays.fill(col.kinds, 0, row, col.kind);
+                col.kind = MIXED;
+            }
+            if (col.kinds != null) {
+                col.kinds[row] = kind;
+            }
+        }
+
+        private int encode(int c, String value) {
+            Integer code = codeLookups.get(c).get(value);
+            if (code == null) {
+                List<String> dictionary = dictionaries.get(c);
+                code = dictionary.size();
+                dictionary.add(value);
+                codeLookups.get(c).put(value, code);
+            }
+            return code;
+        }
+
+        private double[] numbers(Column col) {
+            if (col.numbers == null) col.numbers = new double[capacity];
+            return col.numbers;
+        }
+
+        private int[] codes(Column col) {
+            if (col.codes == null) col.codes = new int[capacity];
+            return col.codes;
+        }
+
+        private void grow(int newCapacity) {
+            for (Column col : columns) {
+                if (col.numbers != null) col.numbers = Arrays.copyOf(col.numbers, newCapacity);
+                if (col.codes != null) col.codes = Arrays.copyOf(col.codes, newCapacity);
+                if (col.kinds != null) col.kinds = Arrays.copyOf(col.kinds, newCapacity);
+            }
+            capacity = newCapacity;
+        }
+
+        public DataTable build() {
+            for (int c = 0; c < columns.length; c++) {
+                Column col = columns[c];
+                if (col.numbers != null) col.numbers = Arrays.copyOf(col.numbers, rowCount);
+                if (col.codes != null) col.codes = Arrays.copyOf(col.codes, rowCount);
+                if (col.kinds != null) col.kinds = Arrays.copyOf(col.kinds, rowCount);
+                col.dictionary = dictionaries.get(c).toArray(new String[0]);
+            }
+            // The lookups are only needed while encoding
+            codeLookups = null;
+            dictionaries = null;
+            return new DataTable(headers, columns, rowCount);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.chartapp.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Keeps uploaded files on disk so they can be queried repeatedly without being re-sent.
+ *
+ * Each dataset is the original upload stored under datasets.dir. Datasets expire
+ * datasets.ttl-minutes after their last access and are removed by a scheduled sweep;
+ * parsed ranges are served from ParseCache keyed by the stored file's digest.
+ */
+@Service
+public class DatasetStore {
+
+    public static class Dataset {
+        private final String id;
+        private final String fileName;
+        private final boolean csv;
+        private final long size;
+        private final String digest;
+        private final Path path;
+        private volatile Instant lastAccess;
+
+        Dataset(String id, String fileName, boolean csv, long size, String digest, Path path) {
+            this.id = id;
+            this.fileName = fileName;
+            this.csv = csv;
+            this.size = size;
+            this.digest = digest;
+            this.path = path;
+            this.lastAccess = Instant.now();
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public boolean isCsv() {
+            return csv;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public String getDigest() {
+            return digest;
+        }
+
+        public FileSystemResource getResource() {
+            return new FileSystemResource(path);
+        }
+
+        public Instant getLastAccess() {
+            return lastAccess;
+        }
+    }
+
+    private final Path directory;
+    private final Duration ttl;
+    private final Map<String, Dataset> datasets = new ConcurrentHashMap<>();
+    private final ParseMetrics metrics;
+
+    public DatasetStore(@Value("${datasets.dir:${java.io.tmpdir}/chartapp-datasets}") String directory,
+                        @Value("${datasets.ttl-minutes:60}") long ttlMinutes,
+                        ParseMetrics metrics) {
+        this.directory = Paths.get(directory);
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        this.metrics = metrics;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(directory);
+        // The registry is in memory, so files left by a previous run can never be reached again
+        try (Stream<Path> leftovers = Files.list(directory)) {
+            leftovers.forEach(this::deleteQuietly);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        datasets.values().forEach(dataset -> deleteQuietly(dataset.path));
+        datasets.clear();
+    }
+
+    public Dataset create(MultipartFile file) throws IOException {
+        String id = UUID.randomUUID().toString();
+        String fileName = file.getOriginalFilename() != null ? file.getOriginalFilename() : "upload";
+        boolean csv = fileName.toLowerCase().endsWith(".csv");
+        Path path = directory.resolve(id + (csv ? ".csv" : ".xlsx"));
+
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        // Hash while copying so the content is only read once
+        long readStart = System.nanoTime();
+        try (InputStream in = new DigestInputStream(file.getInputStream(), sha256)) {
+            Files.copy(in, path);
+        }
+        metrics.phase(ParseMetrics.FILE_READ, csv ? ParseMetrics.CSV : ParseMetrics.XLSX)
+                .record(System.nanoTime() - readStart, TimeUnit.NANOSECONDS);
+
+        Dataset dataset = new Dataset(id, fileName, csv, Files.size(path), HexFormat.of().formatHex(sha256.digest()), path);
+        datasets.put(id, dataset);
+        return dataset;
+    }
+
+    /**
+     * Looks up a live dataset and refreshes its expiry.
+     */
+    public Optional<Dataset> get(String id) {
+        Dataset dataset = datasets.get(id);
+        if (dataset == null) return Optional.empty();
+        dataset.lastAccess = Instant.now();
+        return Optional.of(dataset);
+    }
+
+    public Instant expiresAt(Dataset dataset) {
+        return dataset.lastAccess.plus(ttl);
+    }
+
+    public boolean delete(String id) {
+        Dataset dataset = datasets.remove(id);
+        if (dataset == null) return false;
+        deleteQuietly(dataset.path);
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${datasets.cleanup-interval-ms:60000}")
+    public void removeExpired() {
+        Instant cutoff = Instant.now().minus(ttl);
+        datasets.values().removeIf(dataset -> {
+            if (dataset.lastAccess.isAfter(cutoff)) return false;
+            deleteQuietly(dataset.path);
+            return true;
+        });
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
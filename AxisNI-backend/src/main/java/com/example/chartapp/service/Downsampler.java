@@ -0,0 +1,185 @@
+package com.example.chartapp.service;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Picks which points of a series to keep when it has more points than the chart can usefully show.
+ * Every algorithm is a single pass over the values and always keeps the first and last point.
+ */
+public final class Downsampler {
+
+    public enum Algorithm {
+        /** Largest-Triangle-Three-Buckets: keeps the points that contribute most to the visual shape. */
+        LTTB,
+        /** Keeps the minimum and maximum of each bucket, so peaks and dips survive. */
+        MIN_MAX,
+        /** Keeps every n-th point. Cheapest, but can drop spikes. */
+        EVERY_NTH;
+
+        public static Algorithm parse(String name) {
+            switch (name.trim().toLowerCase().replace("-", "").replace("_", "")) {
+                case "lttb":
+                    return LTTB;
+                case "minmax":
+                    return MIN_MAX;
+                case "everynth":
+                case "nth":
+                    return EVERY_NTH;
+                default:
+                    throw new IllegalArgumentException("Unknown downsampling algorithm: " + name);
+            }
+        }
+    }
+
+    private Downsampler() {
+    }
+
+    /**
+     * Marks the indexes of the points to keep in the given bitset.
+     */
+    public static void select(double[] values, int maxPoints, Algorithm algorithm, BitSet keep) {
+        select(List.of(values), maxPoints, algorithm, keep);
+    }
+
+    /**
+     * Marks one set of indexes, at most maxPoints, to keep for series that share an x axis.
+     * LTTB weighs each series' triangle by the series' range, so a series with large
+     * values does not drown out the others; min-max keeps the extremes of the series
+     * that moves most within each bucket. NaN points never decide a pick.
+     */
+    public static void select(List<double[]> series, int maxPoints, Algorithm algorithm, BitSet keep) {
+        int n = series.isEmpty() ? 0 : series.get(0).length;
+        if (n <= maxPoints || n <= 2) {
+            keep.set(0, n);
+            return;
+        }
+        keep.set(0);
+        keep.set(n - 1);
+        if (maxPoints <= 2) return;
+
+        switch (algorithm) {
+            case LTTB:
+                lttb(series, n, maxPoints, scales(series), keep);
+                break;
+            case MIN_MAX:
+                if (maxPoints < 4) {
+                    // No room for a min and a max between the end points
+                    lttb(series, n, maxPoints, scales(series), keep);
+                } else {
+                    minMax(series, n, maxPoints, scales(series), keep);
+                }
+                break;
+            default:
+                everyNth(n, maxPoints, keep);
+                break;
+        }
+    }
+
+    // 1 / range of each series, so several series can be compared; a lone series keeps its raw values
+    private static double[] scales(List<double[]> series) {
+        double[] scales = new double[series.size()];
+        for (int s = 0; s < scales.length; s++) {
+            if (scales.length == 1) {
+                scales[s] = 1;
+                continue;
+            }
+            double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+            for (double value : series.get(s)) {
+                if (value < min) min = value;
+                if (value > max) max = value;
+            }
+            scales[s] = max > min ? 1 / (max - min) : 0;
+        }
+        return scales;
+    }
+
+    private static void lttb(List<double[]> series, int n, int maxPoints, double[] scales, BitSet keep) {
+        int k = series.size();
+        // First and last points are fixed; the rest are split into maxPoints - 2 buckets
+        double bucketSize = (double) (n - 2) / (maxPoints - 2);
+        double[] avgY = new double[k];
+        int a = 0;
+
+        for (int i = 0; i < maxPoints - 2; i++) {
+            int nextStart = (int) Math.floor((i + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) Math.floor((i + 2) * bucketSize) + 1, n);
+            double avgX = 0;
+            for (int j = nextStart; j < nextEnd; j++) {
+                avgX += j;
+            }
+            avgX /= Math.max(nextEnd - nextStart, 1);
+            for (int s = 0; s < k; s++) {
+                double[] y = series.get(s);
+                double sum = 0;
+                int count = 0;
+                for (int j = nextStart; j < nextEnd; j++) {
+                    if (!Double.isNaN(y[j])) {
+                        sum += y[j];
+                        count++;
+                    }
+                }
+                avgY[s] = sum / Math.max(count, 1);
+            }
+
+            int start = (int) Math.floor(i * bucketSize) + 1;
+            int end = Math.min((int) Math.floor((i + 1) * bucketSize) + 1, n - 1);
+            double maxArea = -1;
+            int chosen = start;
+            for (int j = start; j < end; j++) {
+                double area = 0;
+                for (int s = 0; s < k; s++) {
+                    double[] y = series.get(s);
+                    double triangle = Math.abs((a - avgX) * (y[j] - y[a]) - (a - j) * (avgY[s] - y[a])) * scales[s];
+                    if (!Double.isNaN(triangle)) area += triangle;
+                }
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = j;
+                }
+            }
+            keep.set(chosen);
+            a = chosen;
+        }
+    }
+
+    private static void minMax(List<double[]> series, int n, int maxPoints, double[] scales, BitSet keep) {
+        int buckets = (maxPoints - 2) / 2;
+        double bucketSize = (double) (n - 2) / buckets;
+
+        for (int b = 0; b < buckets; b++) {
+            int start = (int) Math.floor(b * bucketSize) + 1;
+            int end = Math.min((int) Math.floor((b + 1) * bucketSize) + 1, n - 1);
+            if (start >= end) continue;
+            int min = start;
+            int max = start;
+            double widest = -1;
+            for (int s = 0; s < series.size(); s++) {
+                double[] y = series.get(s);
+                int sMin = -1;
+                int sMax = -1;
+                for (int j = start; j < end; j++) {
+                    if (Double.isNaN(y[j])) continue;
+                    if (sMin < 0 || y[j] < y[sMin]) sMin = j;
+                    if (sMax < 0 || y[j] > y[sMax]) sMax = j;
+                }
+                if (sMin < 0) continue;
+                double spread = (y[sMax] - y[sMin]) * scales[s];
+                if (spread > widest) {
+                    widest = spread;
+                    min = sMin;
+                    max = sMax;
+                }
+            }
+            keep.set(min);
+            keep.set(max);
+        }
+    }
+
+    private static void everyNth(int n, int maxPoints, BitSet keep) {
+        int step = (int) Math.ceil((double) (n - 1) / (maxPoints - 1));
+        for (int i = 0; i < n; i += step) {
+            keep.set(i);
+        }
+    }
+}
@@ -1,98 +1,388 @@
 package com.example.chartapp.service;
 
-import com.opencsv.CSVReader;
+import jakarta.annotation.PreDestroy;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.*;
 import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFCell;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.InputStreamReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class FileParsingService {
 
+    // Tables at least this long are converted on the common fork-join pool, in chunks of CONVERT_CHUNK_ROWS
+    private static final int PARALLEL_CONVERT_ROWS = 50_000;
+    private static final int CONVERT_CHUNK_ROWS = 16_384;
+
+    // At most this many ranges per parseExcelRanges call
+    public static final int MAX_RANGES = 50;
+
+    // CSV files are parsed in chunks of at least this many bytes
+    private static final int CSV_CHUNK_BYTES = 1 << 20;
+
+    /**
+     * Where formula cells get their values from in the DOM reader. The streaming reader
+     * always uses the cached value.
+     */
+    public enum FormulaMode {
+        /** The value Excel saved with the file; nothing is evaluated. */
+        CACHED,
+        /** Every formula is evaluated by POI, following its dependencies. */
+        EVALUATE,
+        /** The cached value when the file has one, evaluation otherwise. */
+        AUTO;
+
+        public static FormulaMode parse(String name) {
+            switch (name.trim().toLowerCase()) {
+                case "cached":
+                    return CACHED;
+                case "evaluate":
+                    return EVALUATE;
+                case "auto":
+                    return AUTO;
+                default:
+                    throw new IllegalArgumentException("Unknown formula mode: " + name);
+            }
+        }
+    }
+
+    private final ParseMetrics metrics;
+    private final FormulaMode defaultFormulaMode;
+    private final long formulaBudgetNanos;
+    private final Charset defaultCsvCharset;
+    // Sheets of a multi-range extraction and chunks of a CSV file are read here
+    private final ForkJoinPool parsePool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    private final ChunkedCsvReader csvReader;
+
+    public FileParsingService(ParseMetrics metrics) {
+        this(metrics, "evaluate", 0, "UTF-8");
+    }
+
+    /**
+     * formulaBudgetMs caps the time one read spends evaluating formulas; once it is used
+     * up, the remaining formula cells take their cached values. 0 means no cap.
+     */
+    @Autowired
+    public FileParsingService(ParseMetrics metrics,
+                              @Value("${parse.formula-mode:evaluate}") String defaultFormulaMode,
+                              @Value("${parse.formula-budget-ms:0}") long formulaBudgetMs,
+                              @Value("${parse.csv-charset:UTF-8}") String defaultCsvCharset) {
+        this.metrics = metrics;
+        this.defaultFormulaMode = FormulaMode.parse(defaultFormulaMode);
+        this.formulaBudgetNanos = TimeUnit.MILLISECONDS.toNanos(formulaBudgetMs);
+        this.defaultCsvCharset = Charset.forName(defaultCsvCharset);
+        this.csvReader = new ChunkedCsvReader(metrics, parsePool, CSV_CHUNK_BYTES);
+    }
+
+    /**
+     * The named formula mode, or the configured default when name is null or blank.
+     */
+    public FormulaMode formulaMode(String name) {
+        return name == null || name.isBlank() ? defaultFormulaMode : FormulaMode.parse(name);
+    }
+
+    /**
+     * The named CSV charset, or the configured default when name is null or blank.
+     * A byte order mark in the file takes precedence over either.
+     */
+    public Charset csvCharset(String name) {
+        return name == null || name.isBlank() ? defaultCsvCharset : Charset.forName(name.trim());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        parsePool.shutdownNow();
+    }
+
     /**
      * Parses Excel file with header row used for keys.
      */
-    public List<Map<String, Object>> parseExcelWithHeaders(MultipartFile file, int sheetIndex, String range) throws Exception {
-        try (Workbook workbook = new XSSFWorkbook(file.getInputStream())) {
-            Sheet sheet = workbook.getSheetAt(sheetIndex);
-            CellRangeAddress rangeAddress = CellRangeAddress.valueOf(range);
+    public DataTable parseExcelWithHeaders(InputStreamSource file, int sheetIndex, String range) throws Exception {
+        return parseExcelWithHeaders(file, sheetIndex, range, defaultFormulaMode);
+    }
+
+    public DataTable parseExcelWithHeaders(InputStreamSource file, int sheetIndex, String range, FormulaMode formulas) throws Exception {
+        DataTable.Builder builder = new DataTable.Builder();
+        readExcel(file, sheetIndex, range, formulas, builder);
+        return builder.build();
+    }
 
-            FormulaEvaluator evaluator = workbook.getCreationHelper().createFormulaEvaluator();
+    /**
+     * Same result as parseExcelWithHeaders, but reads the sheet with the streaming
+     * event API so memory stays flat regardless of workbook size.
+     */
+    public DataTable parseExcelStreaming(InputStreamSource file, int sheetIndex, String range) throws Exception {
+        DataTable.Builder builder = new DataTable.Builder();
+        readExcelStreaming(file, sheetIndex, range, builder);
+        return builder.build();
+    }
 
-            List<Map<String, Object>> data = new ArrayList<>();
+    /**
+     * Parses CSV file into a table keyed by headers.
+     */
+    public DataTable parseCsv(InputStreamSource file) throws Exception {
+        return parseCsv(file, defaultCsvCharset);
+    }
 
-            // Read header row first
-            Row headerRow = sheet.getRow(rangeAddress.getFirstRow());
-            if (headerRow == null) {
-                throw new IllegalArgumentException("Header row is missing");
+    /**
+     * Parses the CSV in the given charset. The upload is spooled to disk and parsed in
+     * chunks in parallel, see ChunkedCsvReader.
+     */
+    public DataTable parseCsv(InputStreamSource file, Charset charset) throws Exception {
+        metrics.recordFileSize(ParseMetrics.CSV, sizeOf(file));
+        try (UploadSpool spool = UploadSpool.of(file, metrics, ParseMetrics.CSV)) {
+            DataTable table = csvReader.read(spool.getFile(), charset);
+            metrics.recordTableSize(ParseMetrics.CSV, table.getRowCount(), (long) table.getRowCount() * table.getHeaders().size());
+            return table;
+        } catch (Exception e) {
+            metrics.recordFailure(ParseMetrics.CSV, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the Excel range row by row, passing the header row and then each data row to the handler.
+     */
+    public void readExcel(InputStreamSource file, int sheetIndex, String range, RowHandler handler) throws Exception {
+        readExcel(file, sheetIndex, range, defaultFormulaMode, handler);
+    }
+
+    public void readExcel(InputStreamSource file, int sheetIndex, String range, FormulaMode formulas, RowHandler handler) throws Exception {
+        instrumented(file, ParseMetrics.XLSX, handler, counting -> readWorkbook(file, sheetIndex, range, formulas, counting));
+    }
+
+    private void readWorkbook(InputStreamSource file, int sheetIndex, String range, FormulaMode formulas, RowHandler handler) throws Exception {
+        try (UploadSpool spool = UploadSpool.of(file, metrics, ParseMetrics.XLSX)) {
+            // Opened from the file, POI inflates parts as it needs them instead of buffering the whole zip
+            OPCPackage pkg = OPCPackage.open(spool.getFile(), PackageAccess.READ);
+            try {
+                Workbook workbook = metrics.time(ParseMetrics.WORKBOOK_OPEN, ParseMetrics.XLSX, () -> new XSSFWorkbook(pkg));
+                readSheet(workbook, sheetIndex, range, formulas, handler);
+            } finally {
+                // Read-only packages are released with revert(); closing the workbook would try to save
+                pkg.revert();
             }
+        }
+    }
+
+    private void readSheet(Workbook workbook, int sheetIndex, String range, FormulaMode mode, RowHandler handler) throws Exception {
+        Sheet sheet = workbook.getSheetAt(sheetIndex);
+        CellRangeAddress rangeAddress = CellRangeAddress.valueOf(range);
 
-            List<String> headers = new ArrayList<>();
+        FormulaReader formulas = new FormulaReader(workbook.getCreationHelper().createFormulaEvaluator(), mode, formulaBudgetNanos);
+        long iterateStart = System.nanoTime();
+
+        // Read header row first
+        Row headerRow = sheet.getRow(rangeAddress.getFirstRow());
+        if (headerRow == null) {
+            throw new IllegalArgumentException("Header row is missing");
+        }
+
+        List<String> headers = new ArrayList<>();
+        for (int c = rangeAddress.getFirstColumn(); c <= rangeAddress.getLastColumn(); c++) {
+            Cell cell = headerRow.getCell(c);
+            headers.add(cell != null ? cell.getStringCellValue() : "Column" + (c - rangeAddress.getFirstColumn()));
+        }
+        handler.expectedRows(Math.max(0, Math.min(rangeAddress.getLastRow(), sheet.getLastRowNum()) - rangeAddress.getFirstRow()));
+        handler.headers(headers);
+
+        // Read data rows after header
+        for (int r = rangeAddress.getFirstRow() + 1; r <= rangeAddress.getLastRow(); r++) {
+            Row row = sheet.getRow(r);
+            if (row == null) continue;
+
+            Object[] values = new Object[headers.size()];
             for (int c = rangeAddress.getFirstColumn(); c <= rangeAddress.getLastColumn(); c++) {
-                Cell cell = headerRow.getCell(c);
-                headers.add(cell != null ? cell.getStringCellValue() : "Column" + (c - rangeAddress.getFirstColumn()));
+                Cell cell = row.getCell(c);
+                values[c - rangeAddress.getFirstColumn()] = getCellValue(cell, formulas);
             }
+            handler.row(values);
+        }
 
-            // Read data rows after header
-            for (int r = rangeAddress.getFirstRow() + 1; r <= rangeAddress.getLastRow(); r++) {
-                Row row = sheet.getRow(r);
-                if (row == null) continue;
+        // Sheet iteration includes the formula evaluation time recorded separately below
+        metrics.phase(ParseMetrics.SHEET_ITERATE, ParseMetrics.XLSX).record(System.nanoTime() - iterateStart, TimeUnit.NANOSECONDS);
+        metrics.recordFormulaTime(ParseMetrics.XLSX, formulas.nanos);
+        metrics.recordFormulaCells(ParseMetrics.XLSX, formulas.evaluated, formulas.cached, formulas.overBudget);
+    }
 
-                Map<String, Object> rowMap = new LinkedHashMap<>();
-                for (int c = rangeAddress.getFirstColumn(); c <= rangeAddress.getLastColumn(); c++) {
-                    Cell cell = row.getCell(c);
-                    Object value = getCellValue(cell, evaluator);
-                    rowMap.put(headers.get(c - rangeAddress.getFirstColumn()), value);
+    /**
+     * Extracts several ranges from one workbook, opened once. Each table has the same
+     * headers and values parseExcelWithHeaders would give for its range. Ranges are
+     * grouped by sheet and the sheets are read in parallel, each by a single task, as
+     * POI sheets are not safe to read from several threads. The result is keyed by
+     * RangeSpec.key in the order the specs were given; repeated specs are read once.
+     */
+    public Map<String, DataTable> parseExcelRanges(InputStreamSource file, List<RangeSpec> specs, FormulaMode formulas) throws Exception {
+        if (specs.isEmpty() || specs.size() > MAX_RANGES) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_RANGES + " ranges can be read at once");
+        }
+        metrics.recordFileSize(ParseMetrics.XLSX, sizeOf(file));
+
+        Map<Integer, List<RangeSpec>> bySheet = new LinkedHashMap<>();
+        for (RangeSpec spec : new LinkedHashSet<>(specs)) {
+            bySheet.computeIfAbsent(spec.sheet(), sheet -> new ArrayList<>()).add(spec);
+        }
+
+        try (UploadSpool spool = UploadSpool.of(file, metrics, ParseMetrics.XLSX)) {
+            OPCPackage pkg = OPCPackage.open(spool.getFile(), PackageAccess.READ);
+            try {
+                Workbook workbook = metrics.time(ParseMetrics.WORKBOOK_OPEN, ParseMetrics.XLSX, () -> new XSSFWorkbook(pkg));
+                Map<String, DataTable> tables = new ConcurrentHashMap<>();
+
+                // Fork-join rebuilds exceptions thrown in its tasks, so keep the first one as it was thrown
+                AtomicReference<Exception> failure = new AtomicReference<>();
+                List<Callable<Void>> tasks = new ArrayList<>();
+                for (List<RangeSpec> sheetSpecs : bySheet.values()) {
+                    tasks.add(() -> {
+                        try {
+                            for (RangeSpec spec : sheetSpecs) {
+                                if (failure.get() != null) return null;
+                                DataTable.Builder builder = new DataTable.Builder();
+                                CountingRowHandler counting = new CountingRowHandler(builder);
+                                readSheet(workbook, spec.sheet(), spec.range(), formulas, counting);
+                                metrics.recordTableSize(ParseMetrics.XLSX, counting.rows, counting.cells);
+                                tables.put(spec.key(), builder.build());
+                            }
+                        } catch (Exception e) {
+                            failure.compareAndSet(null, e);
+                        }
+                        return null;
+                    });
+                }
+                parsePool.invokeAll(tasks);
+                if (failure.get() != null) {
+                    throw failure.get();
                 }
-                data.add(rowMap);
-            }
 
-            return data;
+                Map<String, DataTable> result = new LinkedHashMap<>();
+                for (RangeSpec spec : specs) {
+                    result.putIfAbsent(spec.key(), tables.get(spec.key()));
+                }
+                return result;
+            } finally {
+                pkg.revert();
+            }
+        } catch (Exception e) {
+            metrics.recordFailure(ParseMetrics.XLSX, e);
+            throw e;
         }
     }
 
+    /**
+     * Streaming counterpart of readExcel, see parseExcelStreaming.
+     */
+    public void readExcelStreaming(InputStreamSource file, int sheetIndex, String range, RowHandler handler) throws Exception {
+        instrumented(file, ParseMetrics.XLSX_STREAMING, handler, counting -> readWorkbookStreaming(file, sheetIndex, range, counting));
+    }
+
+    private void readWorkbookStreaming(InputStreamSource file, int sheetIndex, String range, RowHandler handler) throws Exception {
+        CellRangeAddress rangeAddress = CellRangeAddress.valueOf(range);
+        // The event API needs random access to the zip, so the upload goes to disk first
+        try (UploadSpool spool = UploadSpool.of(file, metrics, ParseMetrics.XLSX_STREAMING)) {
+            new StreamingXlsxReader(metrics).read(spool.getFile(), sheetIndex, rangeAddress, handler);
+        }
+    }
 
     /**
-     * Parses CSV file into list of maps keyed by headers.
+     * Reads the CSV record by record, passing the header record and then each record to the handler.
+     * An empty file produces no callbacks.
      */
-    public List<Map<String, Object>> parseCsv(MultipartFile file) throws Exception {
-        List<Map<String, Object>> data = new ArrayList<>();
-        try (CSVReader csvReader = new CSVReader(new InputStreamReader(file.getInputStream()))) {
-            String[] headers = csvReader.readNext();
-            if (headers == null) return data;
+    public void readCsv(InputStreamSource file, RowHandler handler) throws Exception {
+        readCsv(file, defaultCsvCharset, handler);
+    }
 
-            String[] values;
-            while ((values = csvReader.readNext()) != null) {
-                Map<String, Object> row = new LinkedHashMap<>();
-                for (int i = 0; i < headers.length; i++) {
-                    row.put(headers[i], i < values.length ? values[i] : "");
-                }
-                data.add(row);
+    public void readCsv(InputStreamSource file, Charset charset, RowHandler handler) throws Exception {
+        instrumented(file, ParseMetrics.CSV, handler, counting -> {
+            try (Reader reader = ChunkedCsvReader.open(file.getInputStream(), charset)) {
+                long iterateStart = System.nanoTime();
+                ChunkedCsvReader.readRecords(reader, counting);
+                metrics.phase(ParseMetrics.SHEET_ITERATE, ParseMetrics.CSV).record(System.nanoTime() - iterateStart, TimeUnit.NANOSECONDS);
             }
+        });
+    }
+
+    /**
+     * Returns sheet names from Excel file. Only workbook.xml is read, no sheet is inflated.
+     */
+    public List<String> getSheetNames(InputStreamSource file) throws Exception {
+        try (UploadSpool spool = UploadSpool.of(file, metrics, ParseMetrics.XLSX)) {
+            return metrics.time(ParseMetrics.WORKBOOK_OPEN, ParseMetrics.XLSX,
+                    () -> new StreamingXlsxReader(metrics).sheetNames(spool.getFile()));
+        } catch (Exception e) {
+            metrics.recordFailure(ParseMetrics.XLSX, e);
+            throw e;
         }
-        return data;
     }
 
     /**
-     * Returns sheet names from Excel file.
+     * Spools the workbook and rejects what a read of the range would only reject once
+     * under way: a malformed range, a file that is not a workbook, or a missing sheet.
+     * The caller reads the returned spool and closes it.
      */
-    public List<String> getSheetNames(MultipartFile file) throws IOException {
-        try (Workbook workbook = new XSSFWorkbook(file.getInputStream())) {
-            List<String> sheetNames = new ArrayList<>();
-            for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
-                sheetNames.add(workbook.getSheetName(i));
+    public UploadSpool openExcel(InputStreamSource file, int sheetIndex, String range) throws Exception {
+        CellRangeAddress address = CellRangeAddress.valueOf(range);
+        if (address.getFirstRow() < 0 || address.getFirstColumn() < 0) {
+            // Whole columns or rows, or text that is not a reference at all; reading it finds no header either
+            throw new IllegalArgumentException("Header row is missing");
+        }
+        UploadSpool spool = UploadSpool.of(file, metrics, ParseMetrics.XLSX);
+        try {
+            int sheetCount = new StreamingXlsxReader(metrics).sheetNames(spool.getFile()).size();
+            if (sheetIndex >= sheetCount) {
+                throw new IllegalArgumentException("Sheet index (" + sheetIndex + ") is out of range (0.." + (sheetCount - 1) + ")");
             }
-            return sheetNames;
+            return spool;
+        } catch (Exception e) {
+            spool.close();
+            metrics.recordFailure(ParseMetrics.XLSX, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Runs a read with upload size, row and cell counts and failures recorded under the given format.
+     */
+    private void instrumented(InputStreamSource file, String format, RowHandler handler, Read read) throws Exception {
+        metrics.recordFileSize(format, sizeOf(file));
+        CountingRowHandler counting = new CountingRowHandler(handler);
+        try {
+            read.into(counting);
+        } catch (Exception e) {
+            metrics.recordFailure(format, e);
+            throw e;
         }
+        metrics.recordTableSize(format, counting.rows, counting.cells);
     }
 
-    private Object getCellValue(Cell cell, FormulaEvaluator evaluator) {
+    private static long sizeOf(InputStreamSource file) {
+        try {
+            if (file instanceof MultipartFile multipartFile) return multipartFile.getSize();
+            if (file instanceof Resource resource) return resource.contentLength();
+        } catch (IOException e) {
+            // Size unknown, nothing to record
+        }
+        return -1;
+    }
+
+    private Object getCellValue(Cell cell, FormulaReader formulas) {
         if (cell == null) return "";
 
         Object value = null;
@@ -112,28 +402,8 @@ public class FileParsingService {
                 value = cell.getBooleanCellValue();
                 break;
             case FORMULA:
-                CellValue evaluatedValue = evaluator.evaluate(cell);
-                if (evaluatedValue == null) return "";
-                switch (evaluatedValue.getCellType()) {
-                    case BOOLEAN:
-                        value = evaluatedValue.getBooleanValue();
-                        break;
-                    case NUMERIC:
-                        value = evaluatedValue.getNumberValue();
-                        break;
-                    case STRING:
-                        value = evaluatedValue.getStringValue();
-                        break;
-                    case BLANK:
-                        value = "";
-                        break;
-                    case ERROR:
-                        value = "ERROR";
-                        break;
-                    default:
-                        value = "";
-                        break;
-                }
+                value = formulas.value(cell);
+                if (value == null) return "";
                 break;
             case BLANK:
                 value = "";
@@ -158,40 +428,56 @@ public class FileParsingService {
     /**
      * Converts raw data into Highcharts config JSON structure.
      */
-    public Map<String, Object> convertToHighchartsConfig(List<Map<String, Object>> rawData) {
-        if (rawData == null || rawData.isEmpty()) {
+    public Map<String, Object> convertToHighchartsConfig(DataTable table) {
+        return convertToHighchartsConfig(table, 0, Downsampler.Algorithm.LTTB);
+    }
+
+    /**
+     * Converts raw data into Highcharts config JSON structure, downsampling to at most
+     * maxPoints rows when maxPoints is positive and the table is larger.
+     *
+     * Series share the category axis, so one set of rows is picked for all of them.
+     */
+    public Map<String, Object> convertToHighchartsConfig(DataTable table, int maxPoints, Downsampler.Algorithm algorithm) {
+        if (table == null || table.getRowCount() == 0) {
             return Map.of("categories", List.of(), "series", List.of());
         }
 
-        Map<String, Object> firstRow = rawData.get(0);
-        List<String> keys = new ArrayList<>(firstRow.keySet());
+        List<String> keys = table.getKeys();
+        int rowCount = table.getRowCount();
+
+        List<double[]> seriesData = toSeriesBuffers(table);
 
-        String categoryKey = keys.get(0);
-        keys.remove(0);
+        int[] rows = null;
+        if (maxPoints > 0 && rowCount > maxPoints) {
+            BitSet keep = new BitSet(rowCount);
+            // Without series there is nothing to shape the pick, so thin the categories evenly
+            Downsampler.select(seriesData.isEmpty() ? List.of(new double[rowCount]) : seriesData, maxPoints, algorithm, keep);
+            rows = keep.stream().toArray();
+        }
 
-        List<String> categories = rawData.stream()
-                .map(row -> String.valueOf(row.get(categoryKey)))
-                .collect(Collectors.toList());
+        int categoryColumn = table.getKeyColumn(0);
+        int outputCount = rows != null ? rows.length : rowCount;
+        List<String> categories = new ArrayList<>(outputCount);
+        for (int i = 0; i < outputCount; i++) {
+            int r = rows != null ? rows[i] : i;
+            categories.add(String.valueOf(table.getValue(r, categoryColumn)));
+        }
 
         List<Map<String, Object>> series = new ArrayList<>();
 
-        for (String key : keys) {
-            List<Number> data = rawData.stream()
-                    .map(row -> {
-                        Object val = row.get(key);
-                        if (val instanceof Number) {
-                            return (Number) val;
-                        }
-                        try {
-                            return Double.parseDouble(String.valueOf(val));
-                        } catch (Exception e) {
-                            return 0;
-                        }
-                    })
-                    .collect(Collectors.toList());
+        for (int k = 1; k < keys.size(); k++) {
+            double[] data = seriesData.get(k - 1);
+            if (rows != null) {
+                double[] kept = new double[rows.length];
+                for (int i = 0; i < rows.length; i++) {
+                    kept[i] = data[rows[i]];
+                }
+                data = kept;
+            }
 
             Map<String, Object> serie = Map.of(
-                    "name", key,
+                    "name", keys.get(k),
                     "data", data
             );
 
@@ -203,4 +489,193 @@ public class FileParsingService {
                 "series", series
         );
     }
+
+    /**
+     * Fills one primitive buffer per series column in a single pass over the rows,
+     * split into fork-join chunks when the table is large.
+     */
+    private List<double[]> toSeriesBuffers(DataTable table) {
+        List<String> keys = table.getKeys();
+        int rowCount = table.getRowCount();
+        int seriesCount = keys.size() - 1;
+
+        int[] columns = new int[seriesCount];
+        double[][] dictionaryNumbers = new double[seriesCount][];
+        double[][] buffers = new double[seriesCount][rowCount];
+        for (int s = 0; s < seriesCount; s++) {
+            columns[s] = table.getKeyColumn(s + 1);
+            dictionaryNumbers[s] = parseDictionary(table, columns[s]);
+        }
+
+        SeriesFillTask task = new SeriesFillTask(table, columns, dictionaryNumbers, buffers, 0, rowCount);
+        if (rowCount >= PARALLEL_CONVERT_ROWS) {
+            ForkJoinPool.commonPool().invoke(task);
+        } else {
+            task.fill();
+        }
+        return Arrays.asList(buffers);
+    }
+
+    // Each distinct string is parsed once; values that are not numbers plot as 0
+    private double[] parseDictionary(DataTable table, int column) {
+        double[] numbers = new double[table.getDictionarySize(column)];
+        for (int code = 0; code < numbers.length; code++) {
+            numbers[code] = NumberParser.parseOrDefault(table.getDictionaryValue(column, code), 0);
+        }
+        return numbers;
+    }
+
+    @FunctionalInterface
+    private interface Read {
+        void into(RowHandler handler) throws Exception;
+    }
+
+    /**
+     * Gives formula cells their values for one read, following the formula mode and
+     * time budget, and counts where each value came from.
+     */
+    private static class FormulaReader {
+        private final FormulaEvaluator evaluator;
+        private final FormulaMode mode;
+        private final long budgetNanos;
+        private long nanos;
+        private long evaluated;
+        private long cached;
+        private boolean overBudget;
+
+        FormulaReader(FormulaEvaluator evaluator, FormulaMode mode, long budgetNanos) {
+            this.evaluator = evaluator;
+            this.mode = mode;
+            this.budgetNanos = budgetNanos;
+        }
+
+        /**
+         * The cell's value, or null when evaluation gave nothing.
+         */
+        Object value(Cell cell) {
+            boolean evaluate = switch (mode) {
+                case CACHED -> false;
+                case EVALUATE -> true;
+                case AUTO -> !hasCachedValue(cell);
+            };
+            if (evaluate && budgetNanos > 0 && nanos >= budgetNanos) {
+                overBudget = true;
+                evaluate = false;
+            }
+            return evaluate ? evaluate(cell) : cachedValue(cell);
+        }
+
+        private Object evaluate(Cell cell) {
+            long evaluateStart = System.nanoTime();
+            CellValue evaluatedValue = evaluator.evaluate(cell);
+            nanos += System.nanoTime() - evaluateStart;
+            evaluated++;
+            if (evaluatedValue == null) return null;
+            switch (evaluatedValue.getCellType()) {
+                case BOOLEAN:
+                    return evaluatedValue.getBooleanValue();
+                case NUMERIC:
+                    return evaluatedValue.getNumberValue();
+                case STRING:
+                    return evaluatedValue.getStringValue();
+                case ERROR:
+                    return "ERROR";
+                default:
+                    return "";
+            }
+        }
+
+        private Object cachedValue(Cell cell) {
+            cached++;
+            switch (cell.getCachedFormulaResultType()) {
+                case BOOLEAN:
+                    return cell.getBooleanCellValue();
+                case NUMERIC:
+                    // A formula saved without a result reads as 0 here, the same as in Excel before recalculation
+                    return cell.getNumericCellValue();
+                case STRING:
+                    return cell.getStringCellValue();
+                case ERROR:
+                    return "ERROR";
+                default:
+                    return "";
+            }
+        }
+
+        private static boolean hasCachedValue(Cell cell) {
+            // XSSF reports a missing <v> as a numeric 0, so look at the cell XML itself
+            return !(cell instanceof XSSFCell xssfCell) || xssfCell.getCTCell().isSetV();
+        }
+    }
+
+    private static class CountingRowHandler implements RowHandler {
+        private final RowHandler delegate;
+        private long rows;
+        private long cells;
+
+        CountingRowHandler(RowHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void expectedRows(long rows) {
+            delegate.expectedRows(rows);
+        }
+
+        @Override
+        public void headers(List<String> headers) throws Exception {
+            delegate.headers(headers);
+        }
+
+        @Override
+        public void row(Object[] values) throws Exception {
+            rows++;
+            cells += values.length;
+            delegate.row(values);
+        }
+    }
+
+    private static class SeriesFillTask extends RecursiveAction {
+        private final DataTable table;
+        private final int[] columns;
+        private final double[][] dictionaryNumbers;
+        private final double[][] buffers;
+        private final int from;
+        private final int to;
+
+        SeriesFillTask(DataTable table, int[] columns, double[][] dictionaryNumbers, double[][] buffers, int from, int to) {
+            this.table = table;
+            this.columns = columns;
+            this.dictionaryNumbers = dictionaryNumbers;
+            this.buffers = buffers;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CONVERT_CHUNK_ROWS) {
+                fill();
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SeriesFillTask(table, columns, dictionaryNumbers, buffers, from, mid),
+                    new SeriesFillTask(table, columns, dictionaryNumbers, buffers, mid, to));
+        }
+
+        void fill() {
+            for (int r = from; r < to; r++) {
+                for (int s = 0; s < columns.length; s++) {
+                    int column = columns[s];
+                    byte kind = table.getKind(r, column);
+                    if (kind == DataTable.NUMBER || kind == DataTable.INTEGER) {
+                        buffers[s][r] = table.getNumber(r, column);
+                    } else if (kind == DataTable.STRING) {
+                        buffers[s][r] = dictionaryNumbers[s][table.getCode(r, column)];
+                    }
+                    // Blank, boolean and date cells plot as 0
+                }
+            }
+        }
+    }
 }
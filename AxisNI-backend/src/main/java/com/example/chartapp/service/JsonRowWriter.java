@@ -0,0 +1,50 @@
+package com.example.chartapp.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes handled rows straight to a JSON array of objects, producing the same
+ * output as serializing the list of row maps without ever holding it.
+ */
+public class JsonRowWriter implements RowHandler {
+
+    private final JsonGenerator generator;
+    private String[] keys;
+    private int[] columns;
+
+    public JsonRowWriter(JsonGenerator generator) throws IOException {
+        this.generator = generator;
+        generator.writeStartArray();
+    }
+
+    @Override
+    public void headers(List<String> headers) {
+        // A repeated header keeps its first position but takes the last column's value, like a LinkedHashMap
+        Map<String, Integer> layout = new LinkedHashMap<>();
+        for (int i = 0; i < headers.size(); i++) {
+            layout.put(headers.get(i), i);
+        }
+        keys = layout.keySet().toArray(new String[0]);
+        columns = new ArrayList<>(layout.values()).stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Override
+    public void row(Object[] values) throws IOException {
+        generator.writeStartObject();
+        for (int i = 0; i < keys.length; i++) {
+            generator.writeFieldName(keys[i]);
+            generator.writeObject(values[columns[i]]);
+        }
+        generator.writeEndObject();
+    }
+
+    public void finish() throws IOException {
+        generator.writeEndArray();
+    }
+}
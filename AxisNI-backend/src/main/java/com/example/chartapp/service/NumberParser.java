@@ -0,0 +1,72 @@
+package com.example.chartapp.service;
+
+/**
+ * Parses decimal numbers without using exceptions for control flow.
+ *
+ * The text is validated first and only handed to Double.parseDouble when it is
+ * known to be well formed, so messy data costs a scan instead of a thrown
+ * NumberFormatException per cell. Accepts what Double.parseDouble accepts for
+ * decimal input: surrounding whitespace, a sign, digits with an optional point,
+ * an exponent, NaN, Infinity and a trailing d/f suffix. Hexadecimal floats are
+ * treated as not numeric.
+ */
+public final class NumberParser {
+
+    private NumberParser() {
+    }
+
+    public static double parseOrDefault(String text, double fallback) {
+        return isNumber(text) ? Double.parseDouble(text) : fallback;
+    }
+
+    public static boolean isNumber(String text) {
+        if (text == null) return false;
+
+        int end = text.length();
+        int i = 0;
+        // Double.parseDouble trims everything up to and including the space character
+        while (i < end && text.charAt(i) <= ' ') i++;
+        while (end > i && text.charAt(end - 1) <= ' ') end--;
+        if (i == end) return false;
+
+        char first = text.charAt(i);
+        if (first == '+' || first == '-') i++;
+        if (i == end) return false;
+
+        if (text.startsWith("NaN", i)) return i + 3 == end;
+        if (text.startsWith("Infinity", i)) return i + 8 == end;
+
+        char last = text.charAt(end - 1);
+        if (last == 'd' || last == 'D' || last == 'f' || last == 'F') end--;
+
+        int digits = 0;
+        while (i < end && isDigit(text.charAt(i))) {
+            i++;
+            digits++;
+        }
+        if (i < end && text.charAt(i) == '.') {
+            i++;
+            while (i < end && isDigit(text.charAt(i))) {
+                i++;
+                digits++;
+            }
+        }
+        if (digits == 0) return false;
+
+        if (i < end && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            i++;
+            if (i < end && (text.charAt(i) == '+' || text.charAt(i) == '-')) i++;
+            int exponentDigits = 0;
+            while (i < end && isDigit(text.charAt(i))) {
+                i++;
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) return false;
+        }
+        return i == end;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
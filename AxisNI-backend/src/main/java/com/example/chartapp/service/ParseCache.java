@@ -0,0 +1,168 @@
+package com.example.chartapp.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.core.io.InputStreamSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bounded LRU cache of parse results, keyed by the SHA-256 of the uploaded
+ * content plus whatever selects the parse (sheet, range, mode).
+ *
+ * Entries are weighed by their estimated heap size and the least recently
+ * used ones are evicted once the total exceeds upload.cache.max-bytes.
+ * The same statistics are published as chartapp.parse.cache.* metrics.
+ */
+@Service
+public class ParseCache implements MeterBinder {
+
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws Exception;
+    }
+
+    private final long maxBytes;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long currentBytes;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ParseCache(@Value("${upload.cache.max-bytes:268435456}") long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public DataTable getTable(InputStreamSource file, String variant, Loader<DataTable> loader) throws Exception {
+        return get(digest(file) + "|" + variant, loader, DataTable::estimatedBytes);
+    }
+
+    public <T> T get(String key, Loader<T> loader, ToLongFunction<T> weigher) throws Exception {
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits.incrementAndGet();
+                @SuppressWarnings("unchecked")
+                T value = (T) entry.value;
+                return value;
+            }
+        }
+
+        // Parse outside the lock; two concurrent misses on one key just parse twice
+        misses.incrementAndGet();
+        T value = loader.load();
+        put(key, value, weigher.applyAsLong(value));
+        return value;
+    }
+
+    private void put(String key, Object value, long weight) {
+        if (weight > maxBytes) return;
+
+        synchronized (entries) {
+            Entry previous = entries.put(key, new Entry(value, weight));
+            if (previous != null) currentBytes -= previous.weight;
+            currentBytes += weight;
+
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (currentBytes > maxBytes && eldest.hasNext()) {
+                Map.Entry<String, Entry> evicted = eldest.next();
+                if (evicted.getKey().equals(key)) continue;
+                currentBytes -= evicted.getValue().weight;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        synchronized (entries) {
+            return Map.of(
+                    "hits", hits.get(),
+                    "misses", misses.get(),
+                    "evictions", evictions.get(),
+                    "entries", entries.size(),
+                    "bytes", currentBytes,
+                    "maxBytes", maxBytes
+            );
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("chartapp.parse.cache.requests", hits, AtomicLong::get)
+                .description("Parse cache lookups")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("chartapp.parse.cache.requests", misses, AtomicLong::get)
+                .description("Parse cache lookups")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("chartapp.parse.cache.evictions", evictions, AtomicLong::get)
+                .description("Entries evicted to stay under the size limit")
+                .register(registry);
+        Gauge.builder("chartapp.parse.cache.entries", this, cache -> {
+                    synchronized (cache.entries) {
+                        return cache.entries.size();
+                    }
+                })
+                .description("Cached parse results")
+                .register(registry);
+        Gauge.builder("chartapp.parse.cache.size", this, cache -> {
+                    synchronized (cache.entries) {
+                        return cache.currentBytes;
+                    }
+                })
+                .description("Estimated heap held by cached parse results")
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("chartapp.parse.cache.max.size", this, cache -> cache.maxBytes)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * Cache variant for one Excel range; the range is normalized so "a1:c9" and "A1:C9" share an entry.
+     */
+    public static String excelVariant(int sheetIndex, String range, boolean streaming, FileParsingService.FormulaMode formulas) {
+        // The streaming reader always takes cached formula values
+        return "excel|" + sheetIndex + "|" + range.trim().toUpperCase() + "|"
+                + (streaming ? "streaming" : "dom|" + formulas.name().toLowerCase());
+    }
+
+    /**
+     * Hex SHA-256 of the file content.
+     */
+    public static String digest(InputStreamSource file) throws IOException {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = file.getInputStream()) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                sha256.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(sha256.digest());
+    }
+
+    private record Entry(Object value, long weight) {
+    }
+}
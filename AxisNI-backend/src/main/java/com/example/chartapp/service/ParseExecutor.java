@@ -0,0 +1,109 @@
+package com.example.chartapp.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs file parsing on a fixed pool of platform threads with a bounded queue.
+ *
+ * Request threads are virtual, so they block cheaply while their parse runs here.
+ * At most parse.max-concurrency parses run at once and parse.queue-capacity wait;
+ * anything beyond that is rejected with a RejectedExecutionException, which the
+ * controllers turn into 429 with Retry-After. Requests that do not parse never
+ * touch this pool, so they keep their latency while heavy uploads are in flight.
+ */
+@Service
+public class ParseExecutor implements MeterBinder {
+
+    @FunctionalInterface
+    public interface Task<T> {
+        T call() throws Exception;
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final long retryAfterSeconds;
+    private Counter rejected;
+
+    public ParseExecutor(@Value("${parse.max-concurrency:0}") int maxConcurrency,
+                         @Value("${parse.queue-capacity:16}") int queueCapacity,
+                         @Value("${parse.retry-after-seconds:5}") long retryAfterSeconds) {
+        // 0 means one parse per core; parsing is CPU-bound once the bytes are in memory
+        int threads = maxConcurrency > 0 ? maxConcurrency : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(queueCapacity, 1)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "parse-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Runs the task on the parse pool and waits for its result. Exceptions thrown
+     * by the task are rethrown as they are.
+     */
+    public <T> T call(Task<T> task) throws Exception {
+        Future<T> future = submit(task);
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) throw cause;
+            throw e;
+        } catch (InterruptedException e) {
+            // The caller gave up, so stop parsing on its behalf
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    /**
+     * Queues the task on the parse pool without waiting for it.
+     */
+    public <T> Future<T> submit(Task<T> task) {
+        try {
+            return executor.submit(task::call);
+        } catch (RejectedExecutionException e) {
+            if (rejected != null) rejected.increment();
+            throw e;
+        }
+    }
+
+    /**
+     * True when a new task would be rejected. Streamed responses check this up front,
+     * since once the body is being written a rejection can no longer become a 429.
+     */
+    public boolean isSaturated() {
+        return executor.getActiveCount() >= executor.getMaximumPoolSize()
+                && executor.getQueue().remainingCapacity() == 0;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new ExecutorServiceMetrics(executor, "parse", Tags.empty()).bindTo(registry);
+        rejected = Counter.builder("chartapp.parse.rejected")
+                .description("Parses rejected because the parse pool and its queue were full")
+                .register(registry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,311 @@
+package com.example.chartapp.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Background parse jobs for uploads too large to parse within one request.
+ *
+ * The upload is spooled to jobs.dir and parsed on the ParseExecutor pool while
+ * rows handled and, for CSV, bytes read are published for polling. Workbooks are
+ * opened from the spooled file, so their progress is rows handled against the
+ * rows the sheet's dimension says the range holds. Cancelling a
+ * job sets a flag that the reader checks on every row and every CSV read, so the
+ * parse stops at the next row. Finished jobs keep their result for
+ * jobs.ttl-minutes and are then removed by a scheduled sweep.
+ */
+@Service
+public class ParseJobService {
+
+    public enum State {
+        QUEUED, RUNNING, DONE, FAILED, CANCELLED
+    }
+
+    public static class ParseJob {
+        private final String id;
+        private final String fileName;
+        private final boolean csv;
+        private final int sheet;
+        private final String range;
+        private final boolean streaming;
+        private final FileParsingService.FormulaMode formulas;
+        private final long totalBytes;
+        private final Path spool;
+        private final Instant createdAt = Instant.now();
+
+        private volatile State state = State.QUEUED;
+        private volatile long rowsProcessed;
+        private volatile long bytesRead;
+        private volatile long expectedRows = -1;
+        private volatile boolean cancelled;
+        private volatile String error;
+        private volatile DataTable result;
+        private volatile Instant finishedAt;
+        private volatile Future<?> future;
+
+        ParseJob(String id, String fileName, boolean csv, int sheet, String range, boolean streaming,
+                 FileParsingService.FormulaMode formulas, long totalBytes, Path spool) {
+            this.id = id;
+            this.fileName = fileName;
+            this.csv = csv;
+            this.sheet = sheet;
+            this.range = range;
+            this.streaming = streaming;
+            this.formulas = formulas;
+            this.totalBytes = totalBytes;
+            this.spool = spool;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public long getRowsProcessed() {
+            return rowsProcessed;
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        /**
+         * Data rows the workbook range is expected to hold, or -1 until known. Not set for CSV.
+         */
+        public long getExpectedRows() {
+            return expectedRows;
+        }
+
+        /**
+         * Fraction done: bytes read for CSV, rows handled against expected rows for workbooks.
+         */
+        public double getProgress() {
+            if (state == State.DONE) return 1;
+            if (csv) return totalBytes > 0 ? (double) bytesRead / totalBytes : 0;
+            return expectedRows > 0 ? Math.min(1, (double) rowsProcessed / expectedRows) : 0;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public DataTable getResult() {
+            return result;
+        }
+
+        public Instant getCreatedAt() {
+            return createdAt;
+        }
+
+        public Instant getFinishedAt() {
+            return finishedAt;
+        }
+
+        private void checkCancelled() {
+            if (cancelled) throw new CancellationException("Job was cancelled");
+        }
+    }
+
+    private final Path directory;
+    private final Duration ttl;
+    private final FileParsingService fileParsingService;
+    private final ParseExecutor parseExecutor;
+    private final Map<String, ParseJob> jobs = new ConcurrentHashMap<>();
+
+    public ParseJobService(@Value("${jobs.dir:${java.io.tmpdir}/chartapp-jobs}") String directory,
+                           @Value("${jobs.ttl-minutes:30}") long ttlMinutes,
+                           FileParsingService fileParsingService,
+                           ParseExecutor parseExecutor) {
+        this.directory = Paths.get(directory);
+        this.ttl = Duration.ofMinutes(ttlMinutes);
+        this.fileParsingService = fileParsingService;
+        this.parseExecutor = parseExecutor;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(directory);
+        // Jobs do not survive a restart, so spooled files from a previous run are orphans
+        try (Stream<Path> leftovers = Files.list(directory)) {
+            leftovers.forEach(this::deleteQuietly);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobs.values().forEach(this::cancel);
+        jobs.clear();
+    }
+
+    /**
+     * Spools the upload and queues its parse. Throws RejectedExecutionException
+     * when the parse pool is saturated; nothing is kept in that case.
+     */
+    public ParseJob submit(MultipartFile file, int sheet, String range, boolean streaming,
+                           FileParsingService.FormulaMode formulas) throws IOException {
+        String id = UUID.randomUUID().toString();
+        String fileName = file.getOriginalFilename() != null ? file.getOriginalFilename() : "upload";
+        boolean csv = fileName.toLowerCase().endsWith(".csv");
+        Path spool = directory.resolve(id + (csv ? ".csv" : ".xlsx"));
+
+        // Moves the multipart temp file when possible instead of copying it; transferTo(Path) would always copy
+        file.transferTo(spool.toFile());
+
+        ParseJob job = new ParseJob(id, fileName, csv, sheet, range, streaming, formulas, Files.size(spool), spool);
+        jobs.put(id, job);
+        try {
+            job.future = parseExecutor.submit(() -> run(job));
+        } catch (RuntimeException e) {
+            jobs.remove(id);
+            deleteQuietly(spool);
+            throw e;
+        }
+        return job;
+    }
+
+    public Optional<ParseJob> get(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * Cancels the job if it is still queued or running and forgets it.
+     */
+    public boolean delete(String id) {
+        ParseJob job = jobs.remove(id);
+        if (job == null) return false;
+        cancel(job);
+        return true;
+    }
+
+    @Scheduled(fixedDelayString = "${jobs.cleanup-interval-ms:60000}")
+    public void removeExpired() {
+        Instant cutoff = Instant.now().minus(ttl);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(cutoff));
+    }
+
+    private Void run(ParseJob job) {
+        try {
+            job.checkCancelled();
+            job.state = State.RUNNING;
+
+            DataTable.Builder builder = new DataTable.Builder();
+            RowHandler progress = new RowHandler() {
+                @Override
+                public void expectedRows(long rows) {
+                    job.expectedRows = rows;
+                }
+
+                @Override
+                public void headers(List<String> headers) {
+                    job.checkCancelled();
+                    builder.headers(headers);
+                }
+
+                @Override
+                public void row(Object[] values) {
+                    job.checkCancelled();
+                    builder.row(values);
+                    job.rowsProcessed++;
+                }
+            };
+
+            if (job.csv) {
+                fileParsingService.readCsv(countingSource(job), progress);
+            } else if (job.streaming) {
+                // Workbooks are opened from the spooled file itself; progress comes from expectedRows instead of bytes
+                fileParsingService.readExcelStreaming(new FileSystemResource(job.spool), job.sheet, job.range, progress);
+            } else {
+                fileParsingService.readExcel(new FileSystemResource(job.spool), job.sheet, job.range, job.formulas, progress);
+            }
+
+            job.result = builder.build();
+            job.bytesRead = job.totalBytes;
+            job.state = State.DONE;
+        } catch (CancellationException e) {
+            job.state = State.CANCELLED;
+        } catch (Exception e) {
+            job.error = e.getMessage();
+            job.state = job.cancelled ? State.CANCELLED : State.FAILED;
+        } finally {
+            job.finishedAt = Instant.now();
+            deleteQuietly(job.spool);
+        }
+        return null;
+    }
+
+    private void cancel(ParseJob job) {
+        job.cancelled = true;
+        Future<?> future = job.future;
+        if (future != null && future.cancel(true) && job.state == State.QUEUED) {
+            // Never started, so run() will not clean up after it
+            job.state = State.CANCELLED;
+            job.finishedAt = Instant.now();
+            deleteQuietly(job.spool);
+        }
+    }
+
+    /**
+     * Reads the spooled file, publishing bytes read and stopping once the job is cancelled.
+     */
+    private InputStreamSource countingSource(ParseJob job) {
+        return () -> new FilterInputStream(Files.newInputStream(job.spool)) {
+            @Override
+            public int read() throws IOException {
+                job.checkCancelled();
+                int b = super.read();
+                if (b >= 0) job.bytesRead++;
+                return b;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                job.checkCancelled();
+                int read = super.read(buffer, offset, length);
+                if (read > 0) job.bytesRead += read;
+                return read;
+            }
+        };
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
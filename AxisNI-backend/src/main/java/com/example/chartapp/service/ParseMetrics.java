@@ -0,0 +1,161 @@
+package com.example.chartapp.service;
+
+import com.opencsv.exceptions.CsvException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.poi.EmptyFileException;
+import org.apache.poi.UnsupportedFileFormatException;
+import org.apache.poi.ooxml.POIXMLException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipException;
+
+/**
+ * Micrometer meters for the upload parsing pipeline.
+ *
+ * Phase timers share one name and are told apart by the phase and format tags,
+ * so dashboards can stack them. Timers and summaries publish histogram buckets,
+ * which is what Prometheus needs for p99 queries.
+ */
+@Component
+public class ParseMetrics {
+
+    public static final String FILE_READ = "file-read";
+    public static final String WORKBOOK_OPEN = "workbook-open";
+    public static final String SHEET_ITERATE = "sheet-iterate";
+    public static final String FORMULA_EVALUATE = "formula-evaluate";
+    public static final String JSON_SERIALIZE = "json-serialize";
+    public static final String ARROW_SERIALIZE = "arrow-serialize";
+
+    public static final String XLSX = "xlsx";
+    public static final String XLSX_STREAMING = "xlsx-streaming";
+    public static final String CSV = "csv";
+    public static final String JSON = "json";
+
+    @FunctionalInterface
+    public interface Step<T> {
+        T run() throws Exception;
+    }
+
+    private final MeterRegistry registry;
+
+    public ParseMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public Timer phase(String phase, String format) {
+        return Timer.builder("chartapp.parse.phase")
+                .description("Time spent in each phase of reading an upload")
+                .tag("phase", phase)
+                .tag("format", format)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    public <T> T time(String phase, String format, Step<T> step) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return step.run();
+        } finally {
+            phase(phase, format).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Records formula evaluation time summed over all cells of one parse, as a single sample.
+     */
+    public void recordFormulaTime(String format, long nanos) {
+        if (nanos > 0) {
+            phase(FORMULA_EVALUATE, format).record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Counts formula cells of one read by where their value came from, and whether the
+     * read ran out of evaluation budget.
+     */
+    public void recordFormulaCells(String format, long evaluated, long cached, boolean overBudget) {
+        if (evaluated > 0) formulaCells(format, "evaluated").increment(evaluated);
+        if (cached > 0) formulaCells(format, "cached").increment(cached);
+        if (overBudget) {
+            Counter.builder("chartapp.parse.formula.budget.exceeded")
+                    .description("Reads that used up their formula evaluation budget and fell back to cached values")
+                    .tag("format", format)
+                    .register(registry)
+                    .increment();
+        }
+    }
+
+    private Counter formulaCells(String format, String source) {
+        return Counter.builder("chartapp.parse.formula.cells")
+                .description("Formula cells read, by whether the value was evaluated or taken from the file")
+                .tag("format", format)
+                .tag("source", source)
+                .register(registry);
+    }
+
+    public void recordFileSize(String format, long bytes) {
+        if (bytes < 0) return;
+        DistributionSummary.builder("chartapp.upload.size")
+                .description("Size of parsed uploads")
+                .baseUnit("bytes")
+                .tag("format", format)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(bytes);
+    }
+
+    public void recordTableSize(String format, long rows, long cells) {
+        DistributionSummary.builder("chartapp.upload.rows")
+                .description("Data rows per parsed upload")
+                .tag("format", format)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(rows);
+        DistributionSummary.builder("chartapp.upload.cells")
+                .description("Cells per parsed upload")
+                .tag("format", format)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(cells);
+    }
+
+    public void recordFailure(String format, Throwable e) {
+        Counter.builder("chartapp.parse.failures")
+                .description("Uploads that could not be parsed")
+                .tag("format", format)
+                .tag("cause", cause(e))
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Maps an exception to a small fixed set of causes, to keep the tag cardinality bounded.
+     */
+    static String cause(Throwable e) {
+        if (e instanceof UnsupportedFileFormatException || e instanceof EmptyFileException
+                || e instanceof POIXMLException || e instanceof OpenXML4JException || e instanceof ZipException) {
+            return "invalid-file";
+        }
+        if (e instanceof CancellationException) {
+            return "cancelled";
+        }
+        if (e instanceof CsvException) {
+            return "invalid-csv";
+        }
+        if (e instanceof IllegalArgumentException) {
+            // Bad sheet index, range or missing header row
+            return "invalid-request";
+        }
+        if (e instanceof IOException) {
+            return "io";
+        }
+        return "other";
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.chartapp.service;
+
+import org.apache.poi.ss.util.CellRangeAddress;
+
+/**
+ * One sheet range to extract, written as "sheet!range" with a zero-based sheet
+ * index, e.g. "0!A1:C20" or "2!B3:F100".
+ */
+public record RangeSpec(int sheet, String range) {
+
+    public static RangeSpec parse(String text) {
+        String trimmed = text.trim();
+        int bang = trimmed.indexOf('!');
+        if (bang <= 0 || bang == trimmed.length() - 1) {
+            throw new IllegalArgumentException("Range spec must look like sheet!range: " + text);
+        }
+
+        int sheet;
+        try {
+            sheet = Integer.parseInt(trimmed.substring(0, bang).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Sheet must be a sheet index: " + text);
+        }
+        if (sheet < 0) {
+            throw new IllegalArgumentException("Sheet index must be non-negative: " + text);
+        }
+
+        String range = trimmed.substring(bang + 1).trim().toUpperCase();
+        // Fails early on a malformed range rather than halfway through the workbook
+        CellRangeAddress.valueOf(range);
+        return new RangeSpec(sheet, range);
+    }
+
+    /**
+     * The key of this range in the result map.
+     */
+    public String key() {
+        return sheet + "!" + range;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.chartapp.service;
+
+import java.util.List;
+
+/**
+ * Receives parsed rows one at a time, header first.
+ */
+public interface RowHandler {
+
+    /**
+     * How many data rows the source says the range holds, when a reader knows before
+     * the first row. Sparse sheets may deliver fewer.
+     */
+    default void expectedRows(long rows) {
+    }
+
+    void headers(List<String> headers) throws Exception;
+
+    void row(Object[] values) throws Exception;
+}
@@ -0,0 +1,531 @@
+package com.example.chartapp.service;
+
+import com.example.chartapp.model.School;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.opencsv.CSVReader;
+import jakarta.annotation.PostConstruct;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * In-memory, column-oriented copy of the schools dataset.
+ *
+ * The CSV is read once at startup. Numeric columns are parsed into primitive
+ * arrays, Type and City get hash indexes and the range-filtered columns are
+ * kept as sorted arrays, so a query is a handful of bitset intersections.
+ * Coordinates go into a uniform grid, so a map viewport only looks at the cells
+ * it overlaps, and at low zoom levels schools are merged into clusters.
+ * Each school is also serialized once, as a typed JSON object and as a row of
+ * values, so compact responses are built by concatenating those bytes.
+ */
+@Service
+public class SchoolIndex {
+
+    private static final String DATA_FILE = "data/DataSchools10.csv";
+
+    // Output key -> CSV header, in the order the API has always used
+    private static final String[][] OUTPUT_FIELDS = {
+            {"rank", "Rank"},
+            {"name", "School Name"},
+            {"type", "Type"},
+            {"city", "City"},
+            {"address", "Address"},
+            {"pupilsKS4", "Pupils KS4"},
+            {"pupilsMeasured", "Pupils Measured"},
+            {"progress8Score", "Progress 8 Score"},
+            {"progress8Description", "Progress 8 Description"},
+            {"enteringEBacc", "Entering EBacc"},
+            {"stayingInEducation", "Staying in Education/Employment"},
+            {"grade5Plus", "Grade 5+ English & Maths (%)"},
+            {"attainment8", "Attainment 8"},
+            {"ebaccScore", "EBacc Avg Point Score"},
+            {"lat", "Latitude"},
+            {"lng", "Longitude"},
+    };
+
+    // About 11 km north-south; small enough that a city viewport touches only a few cells
+    private static final double GRID_CELL_DEGREES = 0.1;
+
+    // From this zoom level on, the viewport returns individual schools
+    public static final int MAX_CLUSTER_ZOOM = 12;
+
+    // Cluster cells per 256 px map tile, so clusters end up about 64 px apart
+    private static final int CLUSTER_CELLS_PER_TILE = 4;
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final byte[] COLUMNAR_HEAD = ("{\"columns\":" + new String(toJson(School.FIELDS), StandardCharsets.UTF_8) + ",\"rows\":[").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] COLUMNAR_TAIL = "]}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ARRAY_HEAD = "[".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ARRAY_TAIL = "]".getBytes(StandardCharsets.UTF_8);
+
+    public record BoundingBox(double minLat, double maxLat, double minLng, double maxLng) {
+
+        public boolean contains(double latitude, double longitude) {
+            return latitude >= minLat && latitude <= maxLat && longitude >= minLng && longitude <= maxLng;
+        }
+    }
+
+    public record Cluster(double lat, double lng, int count) {
+    }
+
+    /**
+     * What a map shows for one viewport: clusters of two or more schools, plus the schools left on their own.
+     */
+    public record Viewport(int zoom, boolean clustered, List<Cluster> clusters, List<Map<String, String>> schools) {
+    }
+
+    private int size;
+    private int[] rank;
+    private int[] pupils;
+    private double[] grade5;
+    private float[] lat;
+    private float[] lng;
+    private String[] lowerName;
+    private List<Map<String, String>> output;
+    private byte[][] objectJson;
+    private byte[][] rowJson;
+
+    private Map<String, BitSet> byType;
+    private Map<String, BitSet> byCity;
+
+    private IntRangeIndex rankIndex;
+    private IntRangeIndex pupilsIndex;
+    private DoubleRangeIndex grade5Index;
+    private SpatialGrid grid;
+
+    @PostConstruct
+    public void load() {
+        try {
+            load(new InputStreamReader(new ClassPathResource(DATA_FILE).getInputStream(), StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            e.printStackTrace();
+            build(new ArrayList<>(), new HashMap<>());
+        }
+    }
+
+    /**
+     * Rebuilds the index from a schools CSV with the same headers as the bundled data file.
+     */
+    public void load(Reader source) {
+        List<String[]> lines = new ArrayList<>();
+        Map<String, Integer> columns = new HashMap<>();
+
+        try (CSVReader reader = new CSVReader(source)) {
+            String[] headers = reader.readNext();
+            if (headers != null) {
+                // Later duplicates win, as they did when each line was copied into a map
+                for (int i = 0; i < headers.length; i++) {
+                    columns.put(headers[i], i);
+                }
+                String[] line;
+                while ((line = reader.readNext()) != null) {
+                    if (!value(line, columns, "Latitude").isEmpty() && !value(line, columns, "Longitude").isEmpty()) {
+                        lines.add(line);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+
+        build(lines, columns);
+    }
+
+    private void build(List<String[]> lines, Map<String, Integer> columns) {
+        size = lines.size();
+        rank = new int[size];
+        pupils = new int[size];
+        grade5 = new double[size];
+        lat = new float[size];
+        lng = new float[size];
+        lowerName = new String[size];
+        output = new ArrayList<>(size);
+        objectJson = new byte[size][];
+        rowJson = new byte[size][];
+        byType = new HashMap<>();
+        byCity = new HashMap<>();
+
+        for (int row = 0; row < size; row++) {
+            String[] line = lines.get(row);
+
+            rank[row] = safeInt(value(line, columns, "Rank"), 0);
+            pupils[row] = safeInt(value(line, columns, "Pupils KS4"), 0);
+            grade5[row] = safeDouble(value(line, columns, "Grade 5+ English & Maths (%)"), 0);
+            lat[row] = (float) safeDouble(value(line, columns, "Latitude"), 0);
+            lng[row] = (float) safeDouble(value(line, columns, "Longitude"), 0);
+            lowerName[row] = value(line, columns, "School Name").toLowerCase();
+
+            byType.computeIfAbsent(value(line, columns, "Type").toLowerCase(), k -> new BitSet(size)).set(row);
+            byCity.computeIfAbsent(value(line, columns, "City").toLowerCase(), k -> new BitSet(size)).set(row);
+
+            Map<String, String> schoolData = new HashMap<>();
+            for (String[] field : OUTPUT_FIELDS) {
+                Integer column = columns.get(field[1]);
+                schoolData.put(field[0], column == null ? null : value(line, column));
+            }
+            output.add(Collections.unmodifiableMap(schoolData));
+
+            School school = new School(
+                    nullableInt(value(line, columns, "Rank")),
+                    value(line, columns, "School Name"),
+                    value(line, columns, "Type"),
+                    value(line, columns, "City"),
+                    value(line, columns, "Address"),
+                    nullableInt(value(line, columns, "Pupils KS4")),
+                    nullableInt(value(line, columns, "Pupils Measured")),
+                    nullableDouble(value(line, columns, "Progress 8 Score")),
+                    value(line, columns, "Progress 8 Description"),
+                    nullableDouble(value(line, columns, "Entering EBacc")),
+                    value(line, columns, "Staying in Education/Employment"),
+                    nullableDouble(value(line, columns, "Grade 5+ English & Maths (%)")),
+                    nullableDouble(value(line, columns, "Attainment 8")),
+                    nullableDouble(value(line, columns, "EBacc Avg Point Score")),
+                    nullableDouble(value(line, columns, "Latitude")),
+                    nullableDouble(value(line, columns, "Longitude")));
+            objectJson[row] = toJson(school);
+            rowJson[row] = toJson(school.values());
+        }
+
+        rankIndex = new IntRangeIndex(rank);
+        pupilsIndex = new IntRangeIndex(pupils);
+        grade5Index = new DoubleRangeIndex(grade5);
+        grid = new SpatialGrid(lat, lng, GRID_CELL_DEGREES);
+    }
+
+    /**
+     * Returns the schools matching every filter, in dataset order.
+     * "All" for type or city and an empty name disable that filter.
+     */
+    public List<Map<String, String>> find(String type, String city, String name,
+                                          int pupilsMax, double grade5Max, int rankMin, int rankMax) {
+        return find(type, city, name, pupilsMax, grade5Max, rankMin, rankMax, null);
+    }
+
+    /**
+     * Same as the other find, limited to schools inside box when it is not null.
+     */
+    public List<Map<String, String>> find(String type, String city, String name,
+                                          int pupilsMax, double grade5Max, int rankMin, int rankMax, BoundingBox box) {
+        BitSet matches = matches(type, city, name, pupilsMax, grade5Max, rankMin, rankMax, box);
+        List<Map<String, String>> schools = new ArrayList<>(matches.cardinality());
+        for (int row = matches.nextSetBit(0); row >= 0; row = matches.nextSetBit(row + 1)) {
+            schools.add(output.get(row));
+        }
+        return schools;
+    }
+
+    /**
+     * The matching schools as a JSON body: an array of School objects, or with columnar
+     * set, {"columns": [...], "rows": [[...], ...]} with the values in School.FIELDS order.
+     * box may be null.
+     */
+    public byte[] findJson(String type, String city, String name, int pupilsMax, double grade5Max,
+                           int rankMin, int rankMax, BoundingBox box, boolean columnar) {
+        BitSet matches = matches(type, city, name, pupilsMax, grade5Max, rankMin, rankMax, box);
+        return columnar
+                ? concat(matches, rowJson, COLUMNAR_HEAD, COLUMNAR_TAIL)
+                : concat(matches, objectJson, ARRAY_HEAD, ARRAY_TAIL);
+    }
+
+    /**
+     * The matching schools inside box as the map should draw them at this zoom level.
+     * Below MAX_CLUSTER_ZOOM, schools that share a cluster cell are returned as one
+     * cluster at their centroid, so the payload is bounded by the viewport size in
+     * cells, not by how many schools it contains.
+     */
+    public Viewport viewport(String type, String city, String name,
+                             int pupilsMax, double grade5Max, int rankMin, int rankMax, BoundingBox box, int zoom) {
+        BitSet matches = matches(type, city, name, pupilsMax, grade5Max, rankMin, rankMax, box);
+        if (zoom >= MAX_CLUSTER_ZOOM) {
+            List<Map<String, String>> schools = new ArrayList<>(matches.cardinality());
+            for (int row = matches.nextSetBit(0); row >= 0; row = matches.nextSetBit(row + 1)) {
+                schools.add(output.get(row));
+            }
+            return new Viewport(zoom, false, List.of(), schools);
+        }
+
+        double cellDegrees = 360.0 / (1L << Math.max(zoom, 0)) / CLUSTER_CELLS_PER_TILE;
+        // Cell key -> {count, first row, sum of latitudes, sum of longitudes}
+        Map<Long, double[]> cells = new LinkedHashMap<>();
+        for (int row = matches.nextSetBit(0); row >= 0; row = matches.nextSetBit(row + 1)) {
+            long key = SpatialGrid.key((int) Math.floor(lat[row] / cellDegrees), (int) Math.floor(lng[row] / cellDegrees));
+            double[] cell = cells.get(key);
+            if (cell == null) {
+                cells.put(key, new double[]{1, row, lat[row], lng[row]});
+            } else {
+                cell[0]++;
+                cell[2] += lat[row];
+                cell[3] += lng[row];
+            }
+        }
+
+        List<Cluster> clusters = new ArrayList<>();
+        List<Map<String, String>> schools = new ArrayList<>();
+        for (double[] cell : cells.values()) {
+            if (cell[0] == 1) {
+                schools.add(output.get((int) cell[1]));
+            } else {
+                clusters.add(new Cluster(cell[2] / cell[0], cell[3] / cell[0], (int) cell[0]));
+            }
+        }
+        return new Viewport(zoom, true, clusters, schools);
+    }
+
+    private BitSet matches(String type, String city, String name,
+                           int pupilsMax, double grade5Max, int rankMin, int rankMax, BoundingBox box) {
+        BitSet matches = rankIndex.between(rankMin, rankMax);
+        if (box != null) {
+            // Narrows things down the most for a zoomed-in map, so do it early
+            matches.and(grid.within(box));
+        }
+        matches.and(pupilsIndex.between(Integer.MIN_VALUE, pupilsMax));
+        matches.and(grade5Index.atMost(grade5Max));
+
+        if (!type.equals("All")) {
+            matches.and(byType.getOrDefault(type.toLowerCase(), new BitSet()));
+        }
+        if (!city.equals("All")) {
+            matches.and(byCity.getOrDefault(city.toLowerCase(), new BitSet()));
+        }
+
+        String needle = name.toLowerCase();
+        if (!needle.isEmpty()) {
+            for (int row = matches.nextSetBit(0); row >= 0; row = matches.nextSetBit(row + 1)) {
+                if (!lowerName[row].contains(needle)) matches.clear(row);
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Joins the fragments of the matching rows with commas between head and tail, sized exactly up front.
+     */
+    private static byte[] concat(BitSet matches, byte[][] fragments, byte[] head, byte[] tail) {
+        int length = head.length + tail.length;
+        int count = 0;
+        for (int row = matches.nextSetBit(0); row >= 0; row = matches.nextSetBit(row + 1)) {
+            length += fragments[row].length;
+            count++;
+        }
+        length += Math.max(count - 1, 0);
+
+        byte[] out = new byte[length];
+        System.arraycopy(head, 0, out, 0, head.length);
+        int at = head.length;
+        for (int row = matches.nextSetBit(0); row >= 0; row = matches.nextSetBit(row + 1)) {
+            if (at > head.length) out[at++] = ',';
+            System.arraycopy(fragments[row], 0, out, at, fragments[row].length);
+            at += fragments[row].length;
+        }
+        System.arraycopy(tail, 0, out, at, tail.length);
+        return out;
+    }
+
+    private static byte[] toJson(Object value) {
+        try {
+            return JSON.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            // Records of strings and numbers always serialize
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String value(String[] line, Map<String, Integer> columns, String header) {
+        Integer column = columns.get(header);
+        return column == null ? "" : value(line, column);
+    }
+
+    private static String value(String[] line, int column) {
+        return column < line.length ? line[column] : "";
+    }
+
+    private static int safeInt(String s, int fallback) {
+        try {
+            return Integer.parseInt(s);
+        } catch (Exception e) {
+            return fallback;
+        }
+    }
+
+    private static Integer nullableInt(String s) {
+        try {
+            return Integer.valueOf(s.trim());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses a number, dropping a trailing percent sign. Returns null when there is no number.
+     */
+    private static Double nullableDouble(String s) {
+        String trimmed = s.trim();
+        if (trimmed.endsWith("%")) trimmed = trimmed.substring(0, trimmed.length() - 1);
+        try {
+            double parsed = Double.parseDouble(trimmed);
+            return Double.isFinite(parsed) ? parsed : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static double safeDouble(String s, double fallback) {
+        try {
+            return Double.parseDouble(s);
+        } catch (Exception e) {
+            return fallback;
+        }
+    }
+
+    /**
+     * Row ids ordered by an int column, for range lookups by binary search.
+     */
+    private static class IntRangeIndex {
+        private final int[] sorted;
+        private final int[] rows;
+        private final int size;
+
+        IntRangeIndex(int[] column) {
+            size = column.length;
+            rows = sortedRows(size, (a, b) -> Integer.compare(column[a], column[b]));
+            sorted = new int[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = column[rows[i]];
+            }
+        }
+
+        BitSet between(int min, int max) {
+            BitSet bits = new BitSet(size);
+            int from = lowerBound(min);
+            for (int i = from; i < size && sorted[i] <= max; i++) {
+                bits.set(rows[i]);
+            }
+            return bits;
+        }
+
+        private int lowerBound(int value) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (sorted[mid] < value) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+    }
+
+    /**
+     * Row ids ordered by a double column, for upper-bound lookups by binary search.
+     */
+    private static class DoubleRangeIndex {
+        private final double[] sorted;
+        private final int[] rows;
+        private final int size;
+
+        DoubleRangeIndex(double[] column) {
+            size = column.length;
+            rows = sortedRows(size, (a, b) -> Double.compare(column[a], column[b]));
+            sorted = new double[size];
+            for (int i = 0; i < size; i++) {
+                sorted[i] = column[rows[i]];
+            }
+        }
+
+        BitSet atMost(double max) {
+            BitSet bits = new BitSet(size);
+            for (int i = 0; i < size && sorted[i] <= max; i++) {
+                bits.set(rows[i]);
+            }
+            return bits;
+        }
+    }
+
+    /**
+     * Row ids bucketed into square cells of latitude and longitude.
+     */
+    private static class SpatialGrid {
+        private final float[] lat;
+        private final float[] lng;
+        private final double cellDegrees;
+        private final Map<Long, int[]> cells = new HashMap<>();
+        // Extent of the occupied cells; nothing outside it needs visiting
+        private int gridMinY = Integer.MAX_VALUE, gridMaxY = Integer.MIN_VALUE;
+        private int gridMinX = Integer.MAX_VALUE, gridMaxX = Integer.MIN_VALUE;
+
+        SpatialGrid(float[] lat, float[] lng, double cellDegrees) {
+            this.lat = lat;
+            this.lng = lng;
+            this.cellDegrees = cellDegrees;
+
+            Map<Long, List<Integer>> rowsByCell = new HashMap<>();
+            for (int row = 0; row < lat.length; row++) {
+                int y = cell(lat[row]), x = cell(lng[row]);
+                gridMinY = Math.min(gridMinY, y);
+                gridMaxY = Math.max(gridMaxY, y);
+                gridMinX = Math.min(gridMinX, x);
+                gridMaxX = Math.max(gridMaxX, x);
+                rowsByCell.computeIfAbsent(key(y, x), k -> new ArrayList<>()).add(row);
+            }
+            rowsByCell.forEach((key, rows) -> cells.put(key, rows.stream().mapToInt(Integer::intValue).toArray()));
+        }
+
+        BitSet within(BoundingBox box) {
+            BitSet bits = new BitSet(lat.length);
+            int minY = Math.max(cell(box.minLat()), gridMinY), maxY = Math.min(cell(box.maxLat()), gridMaxY);
+            int minX = Math.max(cell(box.minLng()), gridMinX), maxX = Math.min(cell(box.maxLng()), gridMaxX);
+            if (minY > maxY || minX > maxX) {
+                return bits;
+            }
+
+            if (((long) maxY - minY + 1) * ((long) maxX - minX + 1) > cells.size()) {
+                // A viewport wider than the data: walking the occupied cells is cheaper
+                cells.forEach((key, rows) -> {
+                    int y = (int) (key >> 32), x = key.intValue();
+                    if (y >= minY && y <= maxY && x >= minX && x <= maxX) addWithin(bits, rows, box);
+                });
+                return bits;
+            }
+            for (int y = minY; y <= maxY; y++) {
+                for (int x = minX; x <= maxX; x++) {
+                    int[] rows = cells.get(key(y, x));
+                    if (rows != null) addWithin(bits, rows, box);
+                }
+            }
+            return bits;
+        }
+
+        private void addWithin(BitSet bits, int[] rows, BoundingBox box) {
+            for (int row : rows) {
+                // Cells on the edge of the box are only partly inside it
+                if (box.contains(lat[row], lng[row])) bits.set(row);
+            }
+        }
+
+        private int cell(double degrees) {
+            return (int) Math.floor(degrees / cellDegrees);
+        }
+
+        static long key(int y, int x) {
+            return ((long) y << 32) | (x & 0xffffffffL);
+        }
+    }
+
+    private static int[] sortedRows(int size, Comparator<Integer> order) {
+        Integer[] boxed = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            boxed[i] = i;
+        }
+        Arrays.sort(boxed, order);
+        int[] rows = new int[size];
+        for (int i = 0; i < size; i++) {
+            rows[i] = boxed[i];
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.chartapp.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+
+/**
+ * Response body that runs the parse while Jackson writes the response, so rows go
+ * straight from the reader to the output stream.
+ *
+ * The status is already committed once the first bytes are flushed; a parse error
+ * after that point aborts the response instead of turning into a 400.
+ */
+public class StreamedRows extends JsonSerializable.Base {
+
+    @FunctionalInterface
+    public interface RowSource {
+        void readInto(RowHandler handler) throws Exception;
+    }
+
+    private final RowSource source;
+
+    public StreamedRows(RowSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Runs the parse into the given handler, for writers other than Jackson.
+     */
+    public void readInto(RowHandler handler) throws Exception {
+        source.readInto(handler);
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        JsonRowWriter writer = new JsonRowWriter(gen);
+        try {
+            source.readInto(writer);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw JsonMappingException.from(gen, "Failed to parse file: " + e.getMessage(), e);
+        }
+        writer.finish();
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+        serialize(gen, serializers);
+    }
+}
@@ -0,0 +1,413 @@
+package com.example.chartapp.service;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a single sheet range from an XLSX file with POI's event API, so only
+ * the rows inside the range are ever materialized.
+ *
+ * Values follow FileParsingService.getCellValue, except that formula cells
+ * use the result cached in the file instead of being re-evaluated.
+ */
+public class StreamingXlsxReader {
+
+    private final ParseMetrics metrics;
+
+    public StreamingXlsxReader(ParseMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void read(File file, int sheetIndex, CellRangeAddress range, RowHandler handler) throws Exception {
+        long openStart = System.nanoTime();
+        OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ);
+        try {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg, false);
+            StylesTable styles = reader.getStylesTable();
+            boolean date1904 = isDate1904(reader);
+            metrics.phase(ParseMetrics.WORKBOOK_OPEN, ParseMetrics.XLSX_STREAMING)
+                    .record(System.nanoTime() - openStart, TimeUnit.NANOSECONDS);
+
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            int index = 0;
+            while (sheets.hasNext()) {
+                try (InputStream sheet = sheets.next()) {
+                    if (index++ != sheetIndex) continue;
+
+                    long iterateStart = System.nanoTime();
+                    SheetHandler sheetHandler = new SheetHandler(strings, styles, date1904, range, handler);
+                    XMLReader parser = XMLHelper.newXMLReader();
+                    parser.setContentHandler(sheetHandler);
+                    try {
+                        parser.parse(new InputSource(sheet));
+                    } catch (StopParsing ignored) {
+                        // Reached the last row of the range
+                    }
+                    sheetHandler.finish();
+                    metrics.phase(ParseMetrics.SHEET_ITERATE, ParseMetrics.XLSX_STREAMING)
+                            .record(System.nanoTime() - iterateStart, TimeUnit.NANOSECONDS);
+                    return;
+                }
+            }
+            throw new IllegalArgumentException("Sheet index (" + sheetIndex + ") is out of range (0.." + (index - 1) + ")");
+        } finally {
+            // Read-only packages are released with revert(); close() would try to save
+            pkg.revert();
+        }
+    }
+
+    /**
+     * Sheet names in workbook order, read from workbook.xml alone.
+     */
+    public List<String> sheetNames(File file) throws Exception {
+        OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ);
+        try {
+            List<String> names = new ArrayList<>();
+            XMLReader parser = XMLHelper.newXMLReader();
+            parser.setContentHandler(new DefaultHandler() {
+                @Override
+                public void startElement(String uri, String localName, String qName, Attributes attributes) {
+                    if ("sheet".equals(localName)) {
+                        names.add(attributes.getValue("name"));
+                    }
+                }
+
+                @Override
+                public void endElement(String uri, String localName, String qName) throws SAXException {
+                    if ("sheets".equals(localName)) {
+                        throw new StopParsing();
+                    }
+                }
+            });
+            try (InputStream workbook = new XSSFReader(pkg).getWorkbookData()) {
+                parser.parse(new InputSource(workbook));
+            } catch (StopParsing ignored) {
+                // Defined names and the rest come after the sheet list
+            }
+            return names;
+        } finally {
+            pkg.revert();
+        }
+    }
+
+    private boolean isDate1904(XSSFReader reader) throws Exception {
+        boolean[] date1904 = {false};
+        XMLReader parser = XMLHelper.newXMLReader();
+        parser.setContentHandler(new DefaultHandler() {
+            @Override
+            public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+                if ("workbookPr".equals(localName)) {
+                    String value = attributes.getValue("date1904");
+                    date1904[0] = "1".equals(value) || "true".equalsIgnoreCase(value);
+                    throw new StopParsing();
+                }
+                if ("sheets".equals(localName)) {
+                    throw new StopParsing();
+                }
+            }
+        });
+        try (InputStream workbook = reader.getWorkbookData()) {
+            parser.parse(new InputSource(workbook));
+        } catch (StopParsing ignored) {
+            // workbookPr precedes the sheet list, nothing else is needed
+        }
+        return date1904[0];
+    }
+
+    /**
+     * Thrown from inside the SAX callbacks to stop reading once the range is exhausted.
+     */
+    private static class StopParsing extends SAXException {
+        StopParsing() {
+            super("stop");
+        }
+    }
+
+    private static class SheetHandler extends DefaultHandler {
+
+        private static final byte DATE = 1;
+        private static final byte PERCENT = 2;
+
+        private final ReadOnlySharedStringsTable strings;
+        private final StylesTable styles;
+        private final boolean date1904;
+        private final int firstRow;
+        private final int lastRow;
+        private final int firstCol;
+        private final int lastCol;
+        private final RowHandler handler;
+        private final byte[] styleFlags;
+
+        private boolean headerSeen;
+        private int rowIndex = -1;
+        private boolean rowInRange;
+        private String[] headerValues;
+        private Object[] values;
+
+        private int colIndex = -1;
+        private boolean cellInRange;
+        private String cellType;
+        private int styleIndex;
+        private boolean hasFormula;
+        private boolean hasValue;
+        private boolean capturing;
+        private final StringBuilder text = new StringBuilder();
+
+        SheetHandler(ReadOnlySharedStringsTable strings, StylesTable styles, boolean date1904,
+                     CellRangeAddress range, RowHandler handler) {
+            this.strings = strings;
+            this.styles = styles;
+            this.date1904 = date1904;
+            this.firstRow = range.getFirstRow();
+            this.lastRow = range.getLastRow();
+            this.firstCol = range.getFirstColumn();
+            this.lastCol = range.getLastColumn();
+            this.handler = handler;
+            this.styleFlags = resolveStyleFlags(styles);
+        }
+
+        // Date and percent checks only depend on the style, so resolve them once per style
+        private static byte[] resolveStyleFlags(StylesTable styles) {
+            if (styles == null) return new byte[0];
+            byte[] flags = new byte[styles.getNumCellStyles()];
+            for (int i = 0; i < flags.length; i++) {
+                XSSFCellStyle style = styles.getStyleAt(i);
+                if (style == null) continue;
+                String format = style.getDataFormatString();
+                if (DateUtil.isADateFormat(style.getDataFormat(), format)) {
+                    flags[i] |= DATE;
+                }
+                if (format != null && format.contains("%")) {
+                    flags[i] |= PERCENT;
+                }
+            }
+            return flags;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            switch (localName) {
+                case "dimension":
+                    expectRows(attributes.getValue("ref"));
+                    break;
+                case "row":
+                    startRow(attributes);
+                    break;
+                case "c":
+                    startCell(attributes);
+                    break;
+                case "f":
+                    if (cellInRange) hasFormula = true;
+                    break;
+                case "v":
+                    if (cellInRange) {
+                        capturing = true;
+                        hasValue = true;
+                        text.setLength(0);
+                    }
+                    break;
+                case "is":
+                    if (cellInRange) {
+                        hasValue = true;
+                        text.setLength(0);
+                    }
+                    break;
+                case "t":
+                    // Inline string text, possibly split into rich text runs
+                    if (cellInRange && "inlineStr".equals(cellType)) capturing = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            switch (localName) {
+                case "v":
+                case "t":
+                    capturing = false;
+                    break;
+                case "c":
+                    if (cellInRange) storeCell();
+                    cellInRange = false;
+                    break;
+                case "row":
+                    endRow();
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (capturing) text.append(ch, start, length);
+        }
+
+        private void startRow(Attributes attributes) throws SAXException {
+            String r = attributes.getValue("r");
+            rowIndex = r != null ? Integer.parseInt(r) - 1 : rowIndex + 1;
+            colIndex = -1;
+
+            if (rowIndex > lastRow) throw new StopParsing();
+
+            rowInRange = rowIndex >= firstRow;
+            if (!rowInRange) return;
+
+            if (rowIndex == firstRow) {
+                headerValues = new String[lastCol - firstCol + 1];
+            } else {
+                if (!headerSeen) throw new IllegalArgumentException("Header row is missing");
+                values = new Object[lastCol - firstCol + 1];
+                Arrays.fill(values, "");
+            }
+        }
+
+        private void startCell(Attributes attributes) {
+            String ref = attributes.getValue("r");
+            colIndex = ref != null ? columnOf(ref) : colIndex + 1;
+            cellInRange = rowInRange && colIndex >= firstCol && colIndex <= lastCol;
+            if (!cellInRange) return;
+
+            cellType = attributes.getValue("t");
+            String s = attributes.getValue("s");
+            styleIndex = s != null ? Integer.parseInt(s) : 0;
+            hasFormula = false;
+            hasValue = false;
+            text.setLength(0);
+        }
+
+        private void storeCell() {
+            int offset = colIndex - firstCol;
+            if (rowIndex == firstRow) {
+                headerValues[offset] = hasValue ? headerText() : "";
+            } else {
+                values[offset] = cellValue();
+            }
+        }
+
+        private String headerText() {
+            if ("s".equals(cellType)) {
+                return strings.getItemAt(Integer.parseInt(text.toString().trim())).getString();
+            }
+            return text.toString();
+        }
+
+        private Object cellValue() {
+            if (!hasValue) return "";
+
+            String raw = text.toString();
+            Object value;
+            if (cellType == null || "n".equals(cellType)) {
+                if (raw.isEmpty()) return "";
+                double number = Double.parseDouble(raw);
+                if (hasFlag(DATE) && DateUtil.isValidExcelDate(number)) {
+                    return DateUtil.getJavaDate(number, date1904);
+                }
+                value = number;
+            } else {
+                switch (cellType) {
+                    case "s":
+                        value = strings.getItemAt(Integer.parseInt(raw.trim())).getString();
+                        break;
+                    case "inlineStr":
+                    case "str":
+                        value = raw;
+                        break;
+                    case "b":
+                        value = "1".equals(raw) || "true".equalsIgnoreCase(raw);
+                        break;
+                    case "e":
+                        value = hasFormula ? "ERROR" : "";
+                        break;
+                    default:
+                        value = "";
+                        break;
+                }
+            }
+
+            // Percentage formatted cells are exposed as 0-100, like the workbook shows them
+            if (value instanceof Double && hasFlag(PERCENT)) {
+                value = (Double) value * 100;
+            }
+            return value;
+        }
+
+        private boolean hasFlag(byte flag) {
+            return styleIndex < styleFlags.length && (styleFlags[styleIndex] & flag) != 0;
+        }
+
+        private void endRow() throws SAXException {
+            if (!rowInRange) return;
+            try {
+                if (rowIndex == firstRow) {
+                    emitHeaders();
+                } else {
+                    handler.row(values);
+                }
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new SAXException(e);
+            }
+            rowInRange = false;
+        }
+
+        // The used area of the sheet, written ahead of the rows; it only feeds progress, so a bad one is ignored
+        private void expectRows(String ref) {
+            if (ref == null) return;
+            try {
+                CellRangeAddress used = CellRangeAddress.valueOf(ref);
+                handler.expectedRows(Math.max(0, Math.min(lastRow, used.getLastRow()) - firstRow));
+            } catch (RuntimeException e) {
+                // No estimate then
+            }
+        }
+
+        private void emitHeaders() throws Exception {
+            List<String> headers = new ArrayList<>(headerValues.length);
+            for (int i = 0; i < headerValues.length; i++) {
+                headers.add(headerValues[i] != null ? headerValues[i] : "Column" + i);
+            }
+            headerSeen = true;
+            handler.headers(headers);
+        }
+
+        void finish() {
+            if (!headerSeen) throw new IllegalArgumentException("Header row is missing");
+        }
+
+        // Converts the column letters of a reference such as "AB12" to a zero-based index
+        private static int columnOf(String ref) {
+            int col = 0;
+            for (int i = 0; i < ref.length(); i++) {
+                char ch = ref.charAt(i);
+                if (ch < 'A' || ch > 'Z') break;
+                col = col * 26 + (ch - 'A' + 1);
+            }
+            return col - 1;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.chartapp.service;
+
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.core.io.Resource;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * An upload as a file on disk, so POI can open it as a random-access zip and
+ * inflate only the parts it reads instead of buffering the whole package, and
+ * CSV files can be memory-mapped.
+ *
+ * Sources that already are files are used in place. A multipart upload is moved
+ * out of the container's temp file with transferTo, which is a rename when the
+ * part is already on disk; anything else is copied. Closing the spool deletes
+ * the file if the spool created it. After transferTo the multipart content may
+ * be gone, so a MultipartFile must not be read again once it has been spooled.
+ */
+public final class UploadSpool implements AutoCloseable {
+
+    private final File file;
+    private final boolean temporary;
+
+    private UploadSpool(File file, boolean temporary) {
+        this.file = file;
+        this.temporary = temporary;
+    }
+
+    /**
+     * Spools the source, timing the transfer as the file-read phase of the given format.
+     */
+    public static UploadSpool of(InputStreamSource source, ParseMetrics metrics, String format) throws Exception {
+        if (source instanceof Resource resource && resource.isFile()) {
+            return new UploadSpool(resource.getFile(), false);
+        }
+
+        Path path = Files.createTempFile("upload-", ".tmp");
+        try {
+            metrics.time(ParseMetrics.FILE_READ, format, () -> {
+                if (source instanceof MultipartFile multipartFile) {
+                    // The File overload goes through Part.write, which renames; the Path one always copies
+                    multipartFile.transferTo(path.toFile());
+                    return null;
+                }
+                try (InputStream in = source.getInputStream()) {
+                    return Files.copy(in, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            });
+            return new UploadSpool(path.toFile(), true);
+        } catch (Exception e) {
+            Files.deleteIfExists(path);
+            throw e;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (temporary) {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+}
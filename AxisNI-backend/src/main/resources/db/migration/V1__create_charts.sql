@@ -0,0 +1,13 @@
+create sequence chart_seq start with 1 increment by 50;
+
+create table charts (
+    id bigint not null,
+    name varchar(255),
+    config_gzip blob,
+    config_hash varchar(64),
+    config_size bigint,
+    created_at timestamp(6) with time zone,
+    primary key (id)
+);
+
+create index idx_charts_name on charts (name);